@@ -16,8 +16,15 @@
 //
 package org.opensextant.xtext;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -66,7 +73,7 @@ public final class ConvertedDocument extends DocInput {
             "title", "author", "creator_tool", "pub_date", "keywords", "subject", "filepath", "encoding",
             //
             // XText metadata.
-            "filtered", "converter", "conversion_date", "encrypted", "filesize", "textsize",
+            "filtered", "converter", "conversion_date", "encrypted", "filesize", "textsize", "truncated", "archive_limit",
 
             // Consideration for compound documents; if this instance is a child doc then what is the parent?
             "xtext_id", // REQUIRED -- the current document ID.
@@ -462,21 +469,45 @@ public final class ConvertedDocument extends DocInput {
         return buffer.length() > 0;
     }
 
+    /**
+     * Text ID computed while the buffer was last written out by saveBuffer(), and the
+     * buffer instance it was computed on. Avoids hashing the full text a second time.
+     */
+    private String textID = null;
+    private String textIDSource = null;
+
     /**
      * Set default ID only after all conversion and all metadata has been acquired.
-     * MD5 hash of text, if text is available, or of the filepath if file is empty.
+     * SHA-1 hash of text, if text is available, or of the filepath if file is empty.
+     * If the text was already saved, the digest computed during the save is reused.
+     * To have the ID computed as the text is saved, use saveBuffer(target, true) instead.
      *
      * @throws IOException on err
      * @throws NoSuchAlgorithmException on err
      */
     public void setDefaultID() throws IOException, NoSuchAlgorithmException {
         if (hasText()) {
-            id = TextUtils.text_id(getText());
+            id = getTextID();
         } else {
             id = TextUtils.text_id(filepath);
         }
     }
 
+    /**
+     * Same value as TextUtils.text_id(getText()), but reuses the digest computed when the
+     * buffer was saved, if the buffer has not changed since.
+     *
+     * @return SHA-1 ID of text buffer
+     * @throws IOException on err
+     * @throws NoSuchAlgorithmException on err
+     */
+    public String getTextID() throws IOException, NoSuchAlgorithmException {
+        if (textID != null && textIDSource == buffer) {
+            return textID;
+        }
+        return TextUtils.text_id(buffer);
+    }
+
     /**
      * The whole point of this mess:  get the text from the original. It is set here and line endings normalized to unix line endings, \n
      *
@@ -771,18 +802,59 @@ public final class ConvertedDocument extends DocInput {
      * @throws IOException on error saving content
      */
     public void saveBuffer(File target) throws IOException {
-        StringBuilder buf = new StringBuilder();
+        saveBuffer(target, false);
+    }
+
+    /**
+     * Save as saveBuffer(target), optionally setting the default ID on the way.  The conversion
+     * metadata trails the text, so the ID is taken from the digest of the text as it is written, and
+     * recorded as "xtext_id" in that metadata; the text is not hashed separately as setDefaultID() would.
+     *
+     * @param target    cached file to save a conversion.
+     * @param defaultID true to set the default ID, the SHA-1 of the text, while saving
+     * @throws IOException on error saving content
+     */
+    public void saveBuffer(File target, boolean defaultID) throws IOException {
+        MessageDigest textDigest;
+        try {
+            textDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException err) {
+            throw new IOException("Unable to create text digest", err);
+        }
 
         // META data cannot be empty.
         // if (meta.isEmpty()) {
         //    buf.append("{}");
         // SAVE conversions with a minimal Base64-encoded header
         // which when decoded is a JSON structure of metadata properties.
-        buf.append(buffer);
-        buf.append("\n\n");
-        buf.append(XT_LABEL);
-        buf.append(Base64.encodeBase64String(meta.toString().getBytes()));
-        buf.append("\n");
-        FileUtility.writeFile(buf.toString(), target.getAbsolutePath(), OUTPUT_ENCODING, false);
+        // Text is streamed out, and the text ID digest is updated as the text bytes are written.
+        String text = buffer;
+        try (FileOutputStream fout = new FileOutputStream(target, false);
+             DigestOutputStream dout = new DigestOutputStream(new BufferedOutputStream(fout), textDigest);
+             Writer out = new OutputStreamWriter(dout, StandardCharsets.UTF_8)) {
+
+            dout.on(text != null);
+            out.write(String.valueOf(text));
+            out.flush();
+            dout.on(false);
+
+            if (text != null) {
+                textID = TextUtils.b2hex(textDigest.digest());
+                textIDSource = text;
+            }
+            if (defaultID) {
+                try {
+                    setDefaultID();
+                } catch (NoSuchAlgorithmException err) {
+                    throw new IOException("Unable to create text ID", err);
+                }
+                meta.put("xtext_id", id);
+            }
+
+            out.write("\n\n");
+            out.write(XT_LABEL);
+            out.write(Base64.encodeBase64String(meta.toString().getBytes()));
+            out.write("\n");
+        }
     }
 }
@@ -17,6 +17,10 @@
 package org.opensextant.xtext;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.apache.commons.io.IOUtils;
 
 import org.opensextant.ConfigException;
 
@@ -52,4 +56,33 @@ public interface Converter {
      * @throws ConfigException cfg err
      */
     ConvertedDocument convert(String data) throws IOException, ConfigException;
+
+    /**
+     * Convert a file from an already open stream, e.g., one that was used to detect the
+     * content type. Implementations that can read from the stream should do so rather than
+     * open the file again.  Caller is responsible for closing stream.
+     *
+     * @param input stream positioned at the start of the content of doc
+     * @param doc file object the stream was opened from
+     * @return the converted document
+     * @throws IOException i/o error
+     * @throws ConfigException cfg err
+     */
+    default ConvertedDocument convert(InputStream input, java.io.File doc) throws IOException, ConfigException {
+        return convert(doc);
+    }
+
+    /**
+     * Convert character data, e.g., HTML or text already decoded in memory.
+     * Implementations that parse characters directly should override this to avoid
+     * encoding the text to bytes and detecting its charset again.
+     *
+     * @param data text to convert. Caller is responsible for closing reader.
+     * @return the converted document
+     * @throws IOException i/o error
+     * @throws ConfigException cfg err
+     */
+    default ConvertedDocument convert(Reader data) throws IOException, ConfigException {
+        return convert(IOUtils.toString(data));
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Plug-in point for converters.  Providers are found with java.util.ServiceLoader, listed in
+ * META-INF/services/org.opensextant.xtext.ConverterProvider, and are cheap to create: the converter
+ * itself is created only when a file of its type is first converted.
+ */
+public interface ConverterProvider {
+
+    /**
+     * @return file extensions handled, lower case, e.g., "html", "htm"
+     */
+    Collection<String> getFileTypes();
+
+    /**
+     * @return MIME types handled, used when content detection finds a file is mislabeled.
+     */
+    Collection<String> getContentTypes();
+
+    /**
+     * Where several providers claim an extension or MIME type, the highest priority wins; ties go to the
+     * provider found first.  Built-in providers use 0.
+     *
+     * @return priority
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * Converters that read the file itself, e.g., with random access, rather than the stream they are given.
+     * Content that is streamed to XText, such as archive entries, is written to disk first for these.
+     *
+     * @return true if the converter needs a file on disk
+     */
+    default boolean requiresFile() {
+        return false;
+    }
+
+    /**
+     * Create the converter.  Called at most once per XText instance.
+     *
+     * @param settings XText settings
+     * @return new converter
+     * @throws IOException if the converter cannot be set up
+     */
+    Converter create(ConverterSettings settings) throws IOException;
+}
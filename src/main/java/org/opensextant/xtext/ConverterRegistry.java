@@ -0,0 +1,155 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converter providers by file extension and by MIME type.  Converters are created on first use and then
+ * shared, so a process only pays for the converters it actually uses.
+ */
+public final class ConverterRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ConverterSettings settings;
+    private final Map<String, ConverterProvider> byExtension = new HashMap<>();
+    private final Map<String, ConverterProvider> byContentType = new HashMap<>();
+    private final Map<ConverterProvider, Converter> instances = new ConcurrentHashMap<>();
+
+    public ConverterRegistry(ConverterSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Register the providers found on the class path, for the given file types only.
+     *
+     * @param fileTypes requested file extensions
+     */
+    public void load(Set<String> fileTypes) {
+        for (ConverterProvider p : ServiceLoader.load(ConverterProvider.class)) {
+            register(p, fileTypes);
+        }
+    }
+
+    /**
+     * Register a provider for those of its extensions that are requested.  Its MIME types are registered only
+     * if at least one extension is.
+     *
+     * @param p         provider
+     * @param fileTypes requested file extensions
+     */
+    public void register(ConverterProvider p, Set<String> fileTypes) {
+        boolean active = false;
+        for (String ext : p.getFileTypes()) {
+            if (fileTypes.contains(ext)) {
+                put(byExtension, ext, p);
+                active = true;
+            }
+        }
+        if (!active) {
+            return;
+        }
+        for (String t : p.getContentTypes()) {
+            put(byContentType, t, p);
+        }
+    }
+
+    private static void put(Map<String, ConverterProvider> map, String key, ConverterProvider p) {
+        map.merge(key, p, (current, added) -> added.getPriority() > current.getPriority() ? added : current);
+    }
+
+    /**
+     * @param ext file extension, lower case
+     * @return provider or null
+     */
+    public ConverterProvider forExtension(String ext) {
+        return byExtension.get(ext);
+    }
+
+    /**
+     * @param type base MIME type
+     * @return provider or null
+     */
+    public ConverterProvider forContentType(String type) {
+        return byContentType.get(type);
+    }
+
+    /**
+     * @return file extensions that have a converter
+     */
+    public Set<String> getFileTypes() {
+        return Collections.unmodifiableSet(byExtension.keySet());
+    }
+
+    /**
+     * The provider's converter, created now if this is its first use.
+     *
+     * @param p provider, may be null
+     * @return converter or null if p is null
+     * @throws IOException if the converter cannot be created
+     */
+    public Converter getConverter(ConverterProvider p) throws IOException {
+        if (p == null) {
+            return null;
+        }
+        Converter conv = instances.get(p);
+        if (conv != null) {
+            return conv;
+        }
+        synchronized (instances) {
+            conv = instances.get(p);
+            if (conv == null) {
+                long t1 = System.currentTimeMillis();
+                conv = p.create(settings);
+                instances.put(p, conv);
+                log.debug("Created {} in {} ms", conv.getClass().getSimpleName(), System.currentTimeMillis() - t1);
+            }
+            return conv;
+        }
+    }
+
+    /**
+     * Release the resources of the converters created so far, such as worker threads.  They are created
+     * again on next use.
+     */
+    public void close() {
+        synchronized (instances) {
+            for (Converter conv : instances.values()) {
+                if (conv instanceof Closeable) {
+                    try {
+                        ((Closeable) conv).close();
+                    } catch (IOException err) {
+                        log.error("Unable to close {}", conv.getClass().getSimpleName(), err);
+                    }
+                }
+            }
+            instances.clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext;
+
+import org.opensextant.xtext.converters.DefaultConverter;
+
+/**
+ * The XText settings converters are created with, as of XText.setup().
+ */
+public final class ConverterSettings {
+
+    int maxBuffer = DefaultConverter.MAX_TEXT_SIZE;
+    int maxHTMLBuffer = 5 * DefaultConverter.MAX_TEXT_SIZE;
+    boolean truncateText = true;
+    boolean scrubHTML = false;
+    TextChunkListener chunkListener = null;
+    int embeddedThreads = 1;
+    int maxSpreadsheetRows = -1;
+    long maxSpreadsheetCells = -1;
+    int pdfThreads = 1;
+    long pdfMinFileSize = 0x1000000;
+
+    public int getMaxBuffer() {
+        return maxBuffer;
+    }
+
+    public int getMaxHTMLBuffer() {
+        return maxHTMLBuffer;
+    }
+
+    public boolean isTruncateText() {
+        return truncateText;
+    }
+
+    public boolean isScrubHTML() {
+        return scrubHTML;
+    }
+
+    public TextChunkListener getChunkListener() {
+        return chunkListener;
+    }
+
+    public int getEmbeddedThreads() {
+        return embeddedThreads;
+    }
+
+    public int getMaxSpreadsheetRows() {
+        return maxSpreadsheetRows;
+    }
+
+    public long getMaxSpreadsheetCells() {
+        return maxSpreadsheetCells;
+    }
+
+    public int getPDFThreads() {
+        return pdfThreads;
+    }
+
+    public long getPDFMinFileSize() {
+        return pdfMinFileSize;
+    }
+}
@@ -120,6 +120,27 @@ public class PathManager {
         return (inputRootName != null);
     }
 
+    /**
+     * Paths for the items of an archive, PST or mailbox exported to a folder: a copy of these settings with
+     * that folder as the strip prefix and input root.  Items are saved and uncached against the copy, while
+     * this instance is left as is for anything converted at the same time.
+     *
+     * @param exportDir folder the items are exported to
+     * @return paths for the exported items
+     * @throws IOException on err
+     */
+    public PathManager forExportDir(File exportDir) throws IOException {
+        PathManager p = new PathManager();
+        p.conversionCache = conversionCache;
+        p.saveConversionsWithOriginals = saveConversionsWithOriginals;
+        p.saveExtractedChildrenWithOriginals = saveExtractedChildrenWithOriginals;
+        p.extractedChildrenCache = extractedChildrenCache;
+        p.saving = saving;
+        p.stripPrefixPath = exportDir.getAbsolutePath();
+        p.setInputRoot(exportDir);
+        return p;
+    }
+
     /**
      * From the provided caching parameters set ahead of time, infer the location
      * where this input should be located within the archive, relatively.  This
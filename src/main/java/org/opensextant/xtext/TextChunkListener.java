@@ -0,0 +1,32 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext;
+
+/**
+ * Receives text of a document in pieces, e.g., page by page, while the document is still being parsed.
+ * The full text is not accumulated in that case; the listener owns the text.
+ */
+public interface TextChunkListener {
+
+    /**
+     * @param doc   the document being converted; file metadata only, text is not set.
+     * @param chunk chunk number in document order, starting at 1.
+     * @param text  text of the chunk
+     */
+    void handleChunk(ConvertedDocument doc, int chunk, String text);
+}
@@ -22,9 +22,17 @@ import org.apache.commons.io.IOCase;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
 import org.opensextant.ConfigException;
 import org.opensextant.util.FileUtility;
+import org.opensextant.xtext.collectors.ArchiveLimits;
 import org.opensextant.xtext.collectors.ArchiveNavigator;
+import org.opensextant.xtext.collectors.mailbox.MboxCrawler;
 import org.opensextant.xtext.collectors.mailbox.OutlookPSTCrawler;
 import org.opensextant.xtext.converters.*;
 import org.slf4j.Logger;
@@ -32,10 +40,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.activation.MimeType;
 import javax.activation.MimeTypeParseException;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -74,12 +89,14 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
  *
  * @author Marc C. Ubaldino, MITRE, ubaldino at mitre dot org
  */
-public final class XText implements ExclusionFilter, Converter {
+public final class XText implements ExclusionFilter, Converter, Closeable {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private boolean scrubHTML = false;
 
     private final PathManager paths = new PathManager();
+    /* Items given directly, as opposed to those of an archive, PST or mailbox */
+    private final Traversal topLevel = new Traversal(paths, null, 0);
 
     public PathManager getPathManager() {
         return paths;
@@ -105,14 +122,39 @@ public final class XText implements ExclusionFilter, Converter {
     protected Set<String> archiveFileTypes = new HashSet<>();
 
     /**
+     * Converters by file extension and MIME type, created on first use.  See ConverterProvider.
+     */
+    private ConverterRegistry registry = null;
+
+    /**
+     * Converters by file extension, of the XText instance that last ran setup().  Read only.
      *
+     * @deprecated converters are held by each XText instance and created on first use; use
+     *             {@link #getConverter(String)}.  Listing this map creates every converter.
      */
-    public static Map<String, Converter> converters = new HashMap<>();
-    private Converter defaultConversion;
-    private Converter embeddedConversion;
+    @Deprecated
+    public static Map<String, Converter> converters = new RegistryView();
+    private static volatile ConverterRegistry lastRegistry = null;
+    private final ConverterProvider defaultConversion = new StandardProviders.Default();
+    private final ConverterProvider embeddedConversion = new StandardProviders.Embedded();
+    private boolean detectContent = true;
+    private boolean preloadTika = true;
     private final Set<String> requestedFileTypes = new HashSet<>();
     private final Set<String> ignoreFileTypes = new HashSet<>();
     private boolean allowNoExtension = false;
+    private boolean truncateText = true;
+    private TextChunkListener chunkListener = null;
+    private int embeddedThreads = 1;
+    private int maxSpreadsheetRows = -1;
+    private long maxSpreadsheetCells = -1;
+    private int pdfThreads = 1;
+    private long pdfMinFileSize = 0x1000000;
+    private boolean exportArchiveEntries = true;
+    private int archiveThreads = 1;
+    private int pstThreads = 1;
+    private int mboxThreads = 1;
+    private boolean archiveManifest = false;
+    private final ArchiveLimits archiveLimits = new ArchiveLimits();
 
     /**
      *
@@ -145,6 +187,73 @@ public final class XText implements ExclusionFilter, Converter {
         maxFileSize = sz;
     }
 
+    /**
+     * Keep partial text of documents larger than the max buffer size, marking them "truncated".
+     * If disabled such documents fail to convert.  Default: enabled.
+     *
+     * @param b true to enable
+     */
+    public void enableTextTruncation(boolean b) {
+        truncateText = b;
+    }
+
+    /**
+     * Incremental text for documents handled by the default converter, e.g., large PDFs:
+     * text is delivered to the listener page by page as it is parsed and is not accumulated, saved or cached.
+     * Set before setup().
+     *
+     * @param l chunk listener, or null to disable
+     */
+    public void setTextChunkListener(TextChunkListener l) {
+        chunkListener = l;
+    }
+
+    /**
+     * Threads used to render embedded objects of compound documents, when embedded extraction is enabled.
+     * Set before setup().
+     *
+     * @param n thread count; default is 1
+     */
+    public void setEmbeddedThreads(int n) {
+        embeddedThreads = n;
+    }
+
+    /**
+     * Row and cell budgets for streamed XLSX conversion, over all sheets of a workbook.  Parsing stops at
+     * either limit, as it does at the max buffer size.  Set before setup().
+     *
+     * @param rows  max rows; negative for no limit (default)
+     * @param cells max non-empty cells; negative for no limit (default)
+     */
+    public void setSpreadsheetLimits(int rows, long cells) {
+        maxSpreadsheetRows = rows;
+        maxSpreadsheetCells = cells;
+    }
+
+    /**
+     * Extract large PDFs in page ranges on several threads.  PDFs of at least the given size, with enough
+     * pages, are split into ranges that are parsed concurrently and joined in page order.  Smaller PDFs, and
+     * all PDFs when embedded objects are extracted, use the default conversion.  Set before setup().
+     *
+     * @param threads     thread count; 1 (default) disables page range extraction
+     * @param minFileSize minimum file size in bytes; default is 16 MB
+     */
+    public void setPDFPageRanges(int threads, long minFileSize) {
+        pdfThreads = threads;
+        pdfMinFileSize = minFileSize;
+    }
+
+    /**
+     * Tika parser profile applied to all converters, e.g., ParserProfile.textOnly() to skip OCR and
+     * embedded images.  The profile is process-wide: Tika is loaded once per JVM, so this applies to
+     * every XText instance and converter, including those already set up, from the next document parsed.
+     *
+     * @param p profile, or null to leave the current profile in place
+     */
+    public static void setParserProfile(ParserProfile p) {
+        TikaRuntime.setProfile(p);
+    }
+
     /**
      * Set if your app requires file extensions or not.
      *
@@ -154,6 +263,28 @@ public final class XText implements ExclusionFilter, Converter {
         allowNoExtension = b;
     }
 
+    /**
+     * Detect content type from the leading bytes of each file, so mislabeled files are routed
+     * to the right converter.  Default: enabled.
+     *
+     * @param b true to enable
+     */
+    public void enableContentDetection(boolean b) {
+        detectContent = b;
+    }
+
+    /**
+     * Load Tika configuration and parsers in setup(), so the first document does not pay for it.  This is
+     * most of the cost of setup(), about a second.  Disable it to defer loading until a converter or content
+     * detection first needs Tika; that only saves time if no document does, e.g., with content detection
+     * disabled and only plain text or images to convert.  Default: enabled.
+     *
+     * @param b true to load Tika in setup()
+     */
+    public void enableTikaPreload(boolean b) {
+        preloadTika = b;
+    }
+
     /**
      * Use Tika HTML de-crapifier. Default: No scrubbing.
      *
@@ -173,6 +304,61 @@ public final class XText implements ExclusionFilter, Converter {
         extractEmbedded = b;
     }
 
+    /**
+     * Save archive entries to the archive export folder before converting them.  If disabled, entries are
+     * converted as they are read from the archive and only nested archives, PST/mailbox files and entries
+     * whose converter needs a file are written out.  Conversions are saved and cached the same either way.
+     * Default: enabled.
+     *
+     * @param b true to save all entries
+     */
+    public void enableArchiveExport(boolean b) {
+        exportArchiveEntries = b;
+    }
+
+    /**
+     * Keep a manifest of the entries of each archive, by name, size and CRC (or time for TAR entries), so an
+     * archive delivered again is processed incrementally: entries unchanged since the last run are skipped
+     * entirely and are not passed to the conversion listener.  Overwrite mode reprocesses all entries.
+     * Default: disabled.
+     *
+     * @param b true to enable
+     */
+    public void enableArchiveManifest(boolean b) {
+        archiveManifest = b;
+    }
+
+    /**
+     * Threads used to convert the entries of a ZIP archive.  With more than one, entries are converted
+     * concurrently and the conversion listener is called from those threads.
+     *
+     * @param n thread count; default is 1
+     */
+    public void setArchiveThreads(int n) {
+        archiveThreads = n;
+    }
+
+    /**
+     * Threads used to read an Outlook PST file.  With more than one, folder items are read concurrently, each
+     * thread with its own handle on the PST, and attachments are converted while reading goes on.  The conversion
+     * listener is then called from those threads.
+     *
+     * @param n thread count; default is 1
+     */
+    public void setPSTThreads(int n) {
+        pstThreads = n;
+    }
+
+    /**
+     * Threads used to convert the messages of an mbox file while it is split.  With more than one, the
+     * conversion listener is called from those threads.
+     *
+     * @param n thread count; default is 1
+     */
+    public void setMboxThreads(int n) {
+        mboxThreads = n;
+    }
+
     /**
      * The overall flag to save converted output or not. DEFAULT: true = save
      * it; provided caller specifies either saveWithInput or provides an
@@ -252,6 +438,10 @@ public final class XText implements ExclusionFilter, Converter {
         return ("pst".equalsIgnoreCase(ext));
     }
 
+    public static boolean isMboxExtension(String ext) {
+        return ("mbox".equalsIgnoreCase(ext));
+    }
+
     protected long total_conv_time = 0;
     protected int average_conv_time = 0;
     protected int total_conversions = 0;
@@ -262,7 +452,7 @@ public final class XText implements ExclusionFilter, Converter {
      *
      * @param d ConvertedDocument
      */
-    protected void trackStatistics(ConvertedDocument d) {
+    protected synchronized void trackStatistics(ConvertedDocument d) {
         if (d != null) {
             total_conv_time += d.conversion_time;
         }
@@ -312,11 +502,13 @@ public final class XText implements ExclusionFilter, Converter {
         if (isArchive(input.getName())) {
             // Archive will collect originals to "export"
             // Archive will save conversions to "output"
-            // PathManager is STATEFUL for as long as this archive is processing
+            // Items of the archive are saved against a copy of PathManager rooted at its export folder.
             // If an archive is uncovered while traversing files, its contents can be dumped to the child export folder.
             convertArchive(input);
         } else if (isPST(input.getName()) && !useTikaPST) {
             this.convertOutlookPST(input);
+        } else if (isMboxExtension(FilenameUtils.getExtension(input.getName()))) {
+            this.convertMbox(input);
         } else if (input.isFile()) {
             // If prefix is not set, then conversion will be dumped flatly to output area.
             paths.setInputRoot(input);
@@ -408,26 +600,67 @@ public final class XText implements ExclusionFilter, Converter {
      * @throws ConfigException on err
      */
     public void convertArchive(File input) throws IOException, ConfigException {
+        convertArchive(input, topLevel);
+    }
+
+    private void convertArchive(File input, Traversal parent) throws IOException, ConfigException {
 
         if (!paths.verifyArchiveExport(input.getAbsolutePath())) {
             return;
         }
 
-        File saveFolder = paths.getArchiveExportDir(input);
-        String savePrefix = paths.getStipPrefixPath();
+        // Counts are kept over the outermost archive and everything in it.
+        ArchiveLimits limits = parent.limits != null ? parent.limits : new ArchiveLimits(archiveLimits);
+        int depth = parent.depth + 1;
+        if (!limits.acceptDepth(depth)) {
+            log.warn("Archive nested too deep, not expanded FILE={}", input);
+            reportArchiveLimit(input, ArchiveLimits.DEPTH, limits);
+            return;
+        }
 
-        paths.setStripPrefixPath(saveFolder.getAbsolutePath());
-        paths.setInputRoot(saveFolder);
+        File saveFolder = parent.paths.getArchiveExportDir(input);
+        Traversal items = new Traversal(parent.paths.forExportDir(saveFolder), limits, depth);
 
-        ArchiveNavigator deArchiver = new ArchiveNavigator(input, saveFolder.getAbsolutePath(), this, this);
+        ArchiveNavigator deArchiver = new ArchiveNavigator(input, saveFolder.getAbsolutePath(), this, items);
         deArchiver.overwrite = ConvertedDocument.overwrite;
+        deArchiver.exportEntries = exportArchiveEntries;
+        deArchiver.threads = archiveThreads;
+        deArchiver.limits = limits;
+        deArchiver.useManifest = archiveManifest;
 
         log.info("\tArchive Found ({}). Expanding to {}", input, saveFolder);
 
         deArchiver.collect();
+        if (limits.claimReport()) {
+            log.warn("Archive expansion stopped at {} limit FILE={}", limits.getExceeded(), input);
+            reportArchiveLimit(input, limits.getExceeded(), limits);
+        }
+    }
 
-        // Done:
-        paths.setStripPrefixPath(savePrefix);
+    /**
+     * An archive that was not fully expanded is reported to the conversion listener as a document with no text,
+     * with the limit reached and the entries and bytes counted so far.  Only the archive that hit the limit is
+     * reported, not the archives that contain it.
+     */
+    private void reportArchiveLimit(File input, String limit, ArchiveLimits limits) {
+        ConvertedDocument doc = new ConvertedDocument(input);
+        doc.addProperty("archive_limit", limit);
+        doc.addNumberProperty("archive_entries", limits.getEntryCount());
+        doc.addNumberProperty("archive_bytes", limits.getByteCount());
+        if (postProcessor != null) {
+            postProcessor.handleConversion(doc, input.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Depth, entry count, size and compression ratio limits for archives and the archives nested in them.
+     * Adjust before converting.  Each outermost archive is expanded with its own copy, so counts are not
+     * kept here.
+     *
+     * @return archive limits
+     */
+    public ArchiveLimits getArchiveLimits() {
+        return archiveLimits;
     }
 
     /**
@@ -436,21 +669,22 @@ public final class XText implements ExclusionFilter, Converter {
      * @throws ConfigException on err
      */
     public void convertOutlookPST(File input) throws ConfigException, IOException {
+        convertOutlookPST(input, topLevel);
+    }
+
+    private void convertOutlookPST(File input, Traversal parent) throws ConfigException, IOException {
         if (!paths.isSaving()) {
             log.error(
                     "Warning -- PST file found, but save = true is required to parse it.  Enable saving and chose a cache folder");
         }
 
         OutlookPSTCrawler pst = new OutlookPSTCrawler(input);
-        pst.setConverter(this);
         pst.overwriteMode = ConvertedDocument.overwrite;
         pst.incrementalMode = true;
+        pst.threads = pstThreads;
 
-        File saveFolder = paths.getArchiveExportDir(input);
-        String savePrefix = paths.getStipPrefixPath();
-
-        paths.setStripPrefixPath(saveFolder.getAbsolutePath());
-        paths.setInputRoot(saveFolder);
+        File saveFolder = parent.paths.getArchiveExportDir(input);
+        pst.setConverter(new Traversal(parent.paths.forExportDir(saveFolder), parent.limits, parent.depth));
         pst.setOutputPSTDir(saveFolder);
         pst.configure();
 
@@ -461,9 +695,78 @@ public final class XText implements ExclusionFilter, Converter {
         } catch (Exception err) {
             throw new ConfigException("Unable to fully digest PST file " + input, err);
         }
+    }
 
-        // Done:
-        paths.setStripPrefixPath(savePrefix);
+    /**
+     * Split an mbox file into messages under the export folder, as is done for PST, and convert each message.
+     *
+     * @param input input mbox file
+     * @throws IOException     on err
+     * @throws ConfigException on err
+     */
+    public void convertMbox(File input) throws ConfigException, IOException {
+        convertMbox(input, topLevel);
+    }
+
+    private void convertMbox(File input, Traversal parent) throws ConfigException, IOException {
+        if (!paths.isSaving()) {
+            log.error(
+                    "Warning -- mbox file found, but save = true is required to parse it.  Enable saving and chose a cache folder");
+        }
+
+        MboxCrawler mbox = new MboxCrawler(input);
+        mbox.overwriteMode = ConvertedDocument.overwrite;
+        mbox.incrementalMode = true;
+        mbox.setThreads(mboxThreads);
+
+        File saveFolder = parent.paths.getArchiveExportDir(input);
+        mbox.setConverter(new Traversal(parent.paths.forExportDir(saveFolder), parent.limits, parent.depth));
+        mbox.setOutputMboxDir(saveFolder);
+        mbox.configure();
+
+        log.info("\tMbox Found ({}). Expanding to {}", input, saveFolder);
+
+        try {
+            mbox.collect();
+        } catch (Exception err) {
+            throw new ConfigException("Unable to fully digest mbox file " + input, err);
+        }
+    }
+
+    /**
+     * Converts the items of one archive, PST or mailbox against the paths of its export folder, and the limits
+     * and nesting depth of the outermost archive they are in.  Navigators and crawlers convert items on their
+     * own threads, so these go with each call rather than being set on XText.
+     */
+    private class Traversal implements Converter {
+        final PathManager paths;
+        /* Null outside of archives */
+        final ArchiveLimits limits;
+        final int depth;
+
+        Traversal(PathManager p, ArchiveLimits l, int d) {
+            paths = p;
+            limits = l;
+            depth = d;
+        }
+
+        @Override
+        public ConvertedDocument convert(File doc) throws IOException, ConfigException {
+            return convertItem(doc, null, null, this);
+        }
+
+        @Override
+        public ConvertedDocument convert(InputStream input, File doc) throws IOException, ConfigException {
+            if (doc.isFile()) {
+                return convertItem(doc, null, null, this);
+            }
+            return convertItem(doc, input, null, this);
+        }
+
+        @Override
+        public ConvertedDocument convert(String data) throws IOException {
+            return XText.this.convert(data);
+        }
     }
 
     /**
@@ -539,13 +842,72 @@ public final class XText implements ExclusionFilter, Converter {
      * @throws ConfigException on err
      */
     public ConvertedDocument convertFile(File input, ConvertedDocument parent) throws IOException, ConfigException {
+        return convertItem(input, null, parent, topLevel);
+    }
+
+    /**
+     * Convert content read from a stream, e.g., an archive entry that was not extracted.  The file need not
+     * exist; its path names the item for caching, saving and the conversion listener.  The content is written
+     * to that path only if the item is itself an archive, PST or mailbox, or if its converter reads files
+     * rather than streams.  If the file does exist it is converted as usual.  Caller is responsible for
+     * closing stream.
+     *
+     * @param input stream positioned at the start of the content
+     * @param doc   path for the item
+     * @return converted document object
+     * @throws IOException     on err
+     * @throws ConfigException on err
+     */
+    @Override
+    public ConvertedDocument convert(InputStream input, File doc) throws IOException, ConfigException {
+        return topLevel.convert(input, doc);
+    }
+
+    /**
+     * Write streamed content to its path, for consumers that need a file.
+     */
+    private static void exportItem(InputStream content, File target) throws IOException {
+        FileUtility.makeDirectory(target.getParentFile());
+        Files.copy(content, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Fails once more than the max file size is read.
+     */
+    private static class SizeLimitedInputStream extends ProxyInputStream {
+        private final long max;
+        private long count = 0;
+        boolean exceeded = false;
+
+        SizeLimitedInputStream(InputStream in, long max) {
+            super(in);
+            this.max = max;
+        }
+
+        @Override
+        protected void afterRead(int n) throws IOException {
+            if (n > 0) {
+                count += n;
+            }
+            if (count > max) {
+                exceeded = true;
+                throw new IOException("File size limit exceeded, " + max + " bytes");
+            }
+        }
+    }
+
+    /**
+     * convertFile() for an item on disk, stream == null, or for streamed content.
+     */
+    private ConvertedDocument convertItem(File input, InputStream stream, ConvertedDocument parent, Traversal scope)
+            throws IOException, ConfigException {
 
         if (parent == null && filterOutFile(input)) {
             return null;
         }
 
-        if (paths.isSaving()) {
-            if (!paths.isSaveWithInput() && !paths.hasInputRoot()) {
+        if (scope.paths.isSaving()) {
+            if (!scope.paths.isSaveWithInput() && !scope.paths.hasInputRoot()) {
 
                 throw new IOException(
                         "Please set an input root; convertFile() was called in save/cache mode without having PathManager setup");
@@ -570,43 +932,46 @@ public final class XText implements ExclusionFilter, Converter {
         /*
          * Handle archives or PST files. Or other large compound single file.
          */
+        boolean compound = isArchive(fname) || (isPSTExtension(ext) && !useTikaPST) || isMboxExtension(ext);
+        if (compound && stream != null) {
+            // These are traversed from disk.
+            exportItem(stream, input);
+        }
         if (isArchive(fname)) {
-            convertArchive(input);
+            convertArchive(input, scope);
 
             // NULL here implies the actual file, A.zip does not have any text representation itself.
             // However its children do.
             return null;
         } else if (isPSTExtension(ext) && !useTikaPST) {
-            convertOutlookPST(input);
+            convertOutlookPST(input, scope);
+            return null;
+        } else if (isMboxExtension(ext)) {
+            convertMbox(input, scope);
             return null;
         }
 
         /*
          * Otherwise this is a normal file...
+         * Streamed content need not declare its size, so it is also counted as it is read.
          */
-        if (FileUtils.sizeOf(input) > maxFileSize) {
+        long size = stream != null ? input.length() : FileUtils.sizeOf(input);
+        if (size > maxFileSize) {
             log.info("Valid File is too large FILE=" + input.getAbsolutePath());
             return null;
         }
+        SizeLimitedInputStream limited = stream != null ? new SizeLimitedInputStream(stream, maxFileSize) : null;
 
-        boolean cachable = true;
-        Converter converter = converters.get(ext);
-        if (converter == null) {
-            if (extractEmbedded && EmbeddedContentConverter.isSupported(ext)) {
-                converter = embeddedConversion;
-                cachable = false; // Such content is processed every time.  Oh well...
-            } else {
-                converter = defaultConversion;
-            }
-        }
+        // Compound documents with embedded objects are processed every time.  Oh well...
+        boolean cachable = !(extractEmbedded && registry.forExtension(ext) == null && EmbeddedContentConverter.isSupported(ext));
 
         ConvertedDocument textDoc = null;
 
         // ------------------
         // Retrieve previous conversions
         // ------------------
-        if (cachable && !ConvertedDocument.overwrite && paths.isSaving()) {
-            textDoc = paths.getCachedConversion(input);
+        if (cachable && !ConvertedDocument.overwrite && scope.paths.isSaving()) {
+            textDoc = scope.paths.getCachedConversion(input);
         }
 
         // ------------------
@@ -616,23 +981,50 @@ public final class XText implements ExclusionFilter, Converter {
             // Measure how long conversions take.
             long t1 = System.currentTimeMillis();
 
-            try {
-                textDoc = converter.convert(input);
+            // One stream serves both content detection (mark/reset over the first few KB) and the converter.
+            try (TikaInputStream content = limited != null ? TikaInputStream.get(CloseShieldInputStream.wrap(limited))
+                    : TikaInputStream.get(input.toPath())) {
+                String detectedType = detectContent ? detectContentType(content, fname) : null;
+                ConverterProvider provider = selectConverter(ext, detectedType);
+                if (provider == null) {
+                    if (extractEmbedded && EmbeddedContentConverter.isSupported(ext)) {
+                        provider = embeddedConversion;
+                    } else {
+                        provider = defaultConversion;
+                    }
+                }
+                Converter conv = registry.getConverter(provider);
+                if (stream != null && provider.requiresFile()) {
+                    exportItem(content, input);
+                    try (TikaInputStream saved = TikaInputStream.get(input.toPath())) {
+                        textDoc = conv.convert(saved, input);
+                    }
+                } else {
+                    textDoc = conv.convert(content, input);
+                }
             } catch (Exception convErr) {
-                throw new IOException("Conversion error FILE=" + input.getPath(), convErr);
+                if (limited == null || !limited.exceeded) {
+                    throw new IOException("Conversion error FILE=" + input.getPath(), convErr);
+                }
+            }
+            if (limited != null && limited.exceeded) {
+                log.info("Valid File is too large FILE=" + input.getAbsolutePath());
+                // Content written out for the converter is not the whole item.
+                FileUtils.deleteQuietly(input);
+                return null;
             }
             long t2 = System.currentTimeMillis();
             int duration = (int) (t2 - t1);
             if (textDoc != null) {
                 // Buffer can be null. If you got this far, you are interested in the file, as it passed
                 // all filters above. Return the document with whatever metadata it found.
-                if (paths.isSaving() && textDoc.is_converted) {
+                if (scope.paths.isSaving() && textDoc.is_converted) {
                     // Get Parent info in there.
                     if (parent != null) {
                         textDoc.setParent(parent);
                     }
 
-                    paths.saveConversion(textDoc);
+                    scope.paths.saveConversion(textDoc);
 
                     // Children items will be persisted in the same folder
                     // structure where the textdoc.textpath resides.
@@ -643,7 +1035,7 @@ public final class XText implements ExclusionFilter, Converter {
                     // disk, it will be written out together.
                     //
                     if (textDoc.hasRawChildren()) {
-                        convertChildren(textDoc);
+                        convertChildren(textDoc, scope);
 
                         // 1. children saved to disk
                         // 2. children converted.
@@ -681,6 +1073,115 @@ public final class XText implements ExclusionFilter, Converter {
         return textDoc;
     }
 
+    /**
+     * MIME types that say little about which converter is best, e.g., any text or any OLE2 container.
+     * Routing stays with the file extension for these.
+     */
+    private static final Set<String> genericContentTypes = new HashSet<>();
+
+    static {
+        genericContentTypes.add("application/octet-stream");
+        genericContentTypes.add("text/plain");
+        genericContentTypes.add("application/x-tika-msoffice");
+        genericContentTypes.add("application/x-tika-ooxml");
+        genericContentTypes.add("application/zip");
+    }
+
+    /**
+     * Magic-byte detection on the first few KB of the content.  The stream is marked and reset, so
+     * the converter reads it from the start.  Only the MIME repository is consulted here; containers
+     * (OLE2, zip) are not opened.
+     *
+     * @param content stream for the file
+     * @param fname   file name, used as a hint
+     * @return base MIME type or null if detection failed
+     */
+    private String detectContentType(TikaInputStream content, String fname) {
+        Metadata md = new Metadata();
+        md.set(TikaCoreProperties.RESOURCE_NAME_KEY, fname);
+        try {
+            MediaType type = TikaRuntime.getInstance().getMimeTypes().detect(content, md);
+            return type.getBaseType().toString();
+        } catch (IOException err) {
+            log.debug("Content detection failed for FILE={}", fname, err);
+            return null;
+        }
+    }
+
+    /**
+     * Choose a converter by file extension and by detected content type.  The converter registered
+     * for the extension is kept if the content agrees with it or if the content type is generic.
+     * Otherwise the file is mislabeled and the converter registered for the content type is used, if there
+     * is one; a specific content type with no converter of its own keeps the converter for the extension.
+     * If neither applies, null is returned and the default conversion applies.
+     *
+     * @param ext          file extension, lower case
+     * @param detectedType detected MIME type or null
+     * @return converter provider or null
+     */
+    private ConverterProvider selectConverter(String ext, String detectedType) {
+        ConverterProvider byExtension = registry.forExtension(ext);
+        if (detectedType == null || genericContentTypes.contains(detectedType)) {
+            return byExtension;
+        }
+        if (byExtension != null && byExtension.getContentTypes().contains(detectedType)) {
+            return byExtension;
+        }
+        ConverterProvider byContent = registry.forContentType(detectedType);
+        if (byContent != null && byContent != byExtension) {
+            log.debug("Content type {} does not match extension {}", detectedType, ext);
+        }
+        return byContent != null ? byContent : byExtension;
+    }
+
+    /**
+     * The converter registered for a file extension, if any.  Call after setup().
+     *
+     * @param ext file extension
+     * @return converter or null
+     * @throws IOException if the converter cannot be created
+     */
+    public Converter getConverter(String ext) throws IOException {
+        return registry.getConverter(registry.forExtension(ext.toLowerCase()));
+    }
+
+    /**
+     * The deprecated static converter map, as a view of the registry of the last XText set up.
+     */
+    private static class RegistryView extends AbstractMap<String, Converter> {
+
+        @Override
+        public Converter get(Object ext) {
+            ConverterRegistry r = lastRegistry;
+            if (r == null || !(ext instanceof String)) {
+                return null;
+            }
+            try {
+                return r.getConverter(r.forExtension((String) ext));
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object ext) {
+            ConverterRegistry r = lastRegistry;
+            return r != null && ext instanceof String && r.forExtension((String) ext) != null;
+        }
+
+        @Override
+        public Set<Entry<String, Converter>> entrySet() {
+            ConverterRegistry r = lastRegistry;
+            Map<String, Converter> all = new HashMap<>();
+            if (r != null) {
+                for (String ext : r.getFileTypes()) {
+                    all.put(ext, get(ext));
+                }
+            }
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+
     /**
      * Navigate a folder trying to convert each file and return something to the
      * listener. Do not sacrifice the entire job if one file fails, so exception
@@ -709,6 +1210,10 @@ public final class XText implements ExclusionFilter, Converter {
      * @throws IOException on err
      */
     public void convertChildren(ConvertedDocument parentDoc) throws IOException {
+        convertChildren(parentDoc, topLevel);
+    }
+
+    private void convertChildren(ConvertedDocument parentDoc, Traversal scope) throws IOException {
 
         if (parentDoc.is_webArchive) {
             // Web Archive is a single document.  Only intent here is to convert to a single text document.
@@ -735,7 +1240,7 @@ public final class XText implements ExclusionFilter, Converter {
                 //
                 IOUtils.write(child.content, io);
 
-                ConvertedDocument childConv = convertFile(childFile, parentDoc);
+                ConvertedDocument childConv = convertItem(childFile, null, parentDoc, scope);
                 if (childConv != null) {
                     if (childConv.is_converted) {
                         // Push down all child metadata down to ConvertedDoc
@@ -812,6 +1317,8 @@ public final class XText implements ExclusionFilter, Converter {
         // Limited PST support here.  PST will not behave the same as other files.
         // Its closer to a Zip archive than an ordinary file.
         requestedFileTypes.add("pst");
+        // Likewise mbox, which is split into messages.
+        requestedFileTypes.add("mbox");
 
         // requested_types.add("log"); // Uncommon. Caller must expclitly add
         // raw data types and archives.
@@ -822,7 +1329,22 @@ public final class XText implements ExclusionFilter, Converter {
      */
     public void clearSettings() {
         requestedFileTypes.clear();
-        converters.clear();
+        close();
+        if (lastRegistry == registry) {
+            lastRegistry = null;
+        }
+        registry = null;
+    }
+
+    /**
+     * Release converter resources, such as the worker threads used for embedded objects.  Converters are
+     * created again as needed, so XText remains usable.
+     */
+    @Override
+    public void close() {
+        if (registry != null) {
+            registry.close();
+        }
     }
 
     /**
@@ -834,55 +1356,38 @@ public final class XText implements ExclusionFilter, Converter {
      */
     public void setup() throws IOException {
 
-        defaultConversion = new DefaultConverter(maxBuffer);
-        embeddedConversion = new EmbeddedContentConverter(maxBuffer);
+        ConverterSettings settings = new ConverterSettings();
+        settings.maxBuffer = maxBuffer;
+        settings.maxHTMLBuffer = maxHTMLBuffer;
+        settings.truncateText = truncateText;
+        settings.scrubHTML = scrubHTML;
+        settings.chunkListener = chunkListener;
+        settings.embeddedThreads = embeddedThreads;
+        settings.maxSpreadsheetRows = maxSpreadsheetRows;
+        settings.maxSpreadsheetCells = maxSpreadsheetCells;
+        settings.pdfThreads = pdfThreads;
+        settings.pdfMinFileSize = pdfMinFileSize;
 
         paths.configure();
-
-        // Invoke converter instances only as requested types suggest.
-        // If caller has removed file types from the list, then
-
-        String mimetype = "txt";
-        if (requestedFileTypes.contains(mimetype)) {
-            converters.put(mimetype, new TextTranscodingConverter());
+        if (preloadTika) {
+            // Load Tika configuration and parsers once, up front; all converters share them.
+            TikaRuntime.initialize();
         }
 
-        mimetype = "html";
-        if (requestedFileTypes.contains(mimetype)) {
-            Converter webConv = new TikaHTMLConverter(this.scrubHTML, maxHTMLBuffer);
-            converters.put(mimetype, webConv);
-            converters.put("htm", webConv);
-            converters.put("xhtml", webConv);
-
+        if (requestedFileTypes.contains("html")) {
             requestedFileTypes.add("htm");
             requestedFileTypes.add("xhtml");
         }
 
-        // Note -  OfficeConverter is an alternative, however it works in obscure ways and does not handle
-        // files saved by Outlook as .MSG format.  Oh well.
-        Converter emailParser = new MessageConverter();
-
-        mimetype = "eml";
-        if (requestedFileTypes.contains(mimetype)) {
-            converters.put(mimetype, emailParser);
-        }
-        mimetype = "msg";
-        if (requestedFileTypes.contains(mimetype)) {
-            converters.put(mimetype, emailParser);
-        }
-        WebArchiveConverter webArchiveParser = new WebArchiveConverter();
-        mimetype = "mht"; /* RFC822 */
-        if (requestedFileTypes.contains(mimetype)) {
-            converters.put(mimetype, webArchiveParser);
-        }
-
-        ImageMetadataConverter imgConv = new ImageMetadataConverter();
-        String[] imageTypes = {"jpeg", "jpg"};
-        for (String img : imageTypes) {
-            if (requestedFileTypes.contains(img)) {
-                converters.put(img, imgConv);
-            }
+        close();
+        // Converters are registered only as requested types suggest, and are created on first use.
+        registry = new ConverterRegistry(settings);
+        registry.load(requestedFileTypes);
+        if (pdfThreads > 1 && !extractEmbedded) {
+            // Otherwise PDF is handled by default or embedded conversion.
+            registry.register(new StandardProviders.PDF(), requestedFileTypes);
         }
+        lastRegistry = registry;
 
         // ALWAYS ignore our own text conversions or those of others.
         // So here all known convertable types will need a filter for their
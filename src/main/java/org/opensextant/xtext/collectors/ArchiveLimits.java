@@ -0,0 +1,254 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.collectors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.utils.InputStreamStatistics;
+import org.apache.commons.io.input.ProxyInputStream;
+
+/**
+ * Bounds on expanding an archive and the archives nested in it: nesting depth, entry count, total expanded
+ * bytes and compression ratio.  One instance holds the settings; each outermost archive is expanded with a
+ * copy of them, and counts are kept on that copy over the archive and everything in it.  Sizes and
+ * ratios declared in a ZIP central directory are checked before any entry is read, those declared in other
+ * entry headers before that entry is read; the bytes and ratio actually
+ * observed are checked as entries are read.  Once the count, byte or ratio limit is exceeded, expansion
+ * stops at every level.  An archive nested too deep is not expanded, but its siblings are.
+ * <p>
+ * The ratio limit applies to entries of more than 1 MB, as small entries compress well for legitimate
+ * reasons.  A negative limit disables that check.
+ */
+public class ArchiveLimits {
+
+    public static final String DEPTH = "depth";
+    public static final String ENTRIES = "entries";
+    public static final String BYTES = "bytes";
+    public static final String RATIO = "ratio";
+
+    private static final long RATIO_GRACE = 0x100000;
+
+    private int maxDepth = 5;
+    private long maxEntries = 1000000;
+    private long maxBytes = 100L * 0x40000000;
+    private double maxRatio = 100;
+
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String exceeded = null;
+    private boolean reported = false;
+
+    public ArchiveLimits() {
+    }
+
+    /**
+     * Limits for expanding one outermost archive, with counts starting at zero.
+     *
+     * @param settings limits to copy
+     */
+    public ArchiveLimits(ArchiveLimits settings) {
+        maxDepth = settings.maxDepth;
+        maxEntries = settings.maxEntries;
+        maxBytes = settings.maxBytes;
+        maxRatio = settings.maxRatio;
+    }
+
+    /**
+     * @param n archives nested deeper than this are not expanded; the outermost is depth 1. Default is 5.
+     */
+    public void setMaxDepth(int n) {
+        maxDepth = n;
+    }
+
+    /**
+     * @param n max entries over all nested archives. Default is 1,000,000.
+     */
+    public void setMaxEntries(long n) {
+        maxEntries = n;
+    }
+
+    /**
+     * @param n max bytes expanded over all nested archives. Default is 100 GB.
+     */
+    public void setMaxBytes(long n) {
+        maxBytes = n;
+    }
+
+    /**
+     * @param r max ratio of expanded to compressed size. Default is 100.
+     */
+    public void setMaxRatio(double r) {
+        maxRatio = r;
+    }
+
+    /**
+     * @param depth nesting depth of an archive; the outermost is 1
+     * @return false if the archive is nested too deep
+     */
+    public boolean acceptDepth(int depth) {
+        return maxDepth < 0 || depth <= maxDepth;
+    }
+
+    /**
+     * @return the limit that stopped expansion, or null
+     */
+    public String getExceeded() {
+        return exceeded;
+    }
+
+    public boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    /**
+     * An exceeded limit is reported once, by the archive that hit it.  Nested archives finish before the
+     * archives that contain them, so the first caller is the innermost archive being expanded at the time.
+     *
+     * @return true if a limit is exceeded and this is the first call
+     */
+    public synchronized boolean claimReport() {
+        if (exceeded == null || reported) {
+            return false;
+        }
+        reported = true;
+        return true;
+    }
+
+    public long getEntryCount() {
+        return entries.get();
+    }
+
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    private boolean exceed(String limit) {
+        if (exceeded == null) {
+            exceeded = limit;
+        }
+        return false;
+    }
+
+    /**
+     * Count an entry and check its declared size and ratio, if its header has them.
+     *
+     * @param e archive entry
+     * @return false if a limit is exceeded
+     */
+    public boolean accept(ArchiveEntry e) {
+        if (exceeded != null) {
+            return false;
+        }
+        if (maxEntries >= 0 && entries.incrementAndGet() > maxEntries) {
+            return exceed(ENTRIES);
+        }
+        long size = e.getSize();
+        if (size > 0 && maxBytes >= 0 && bytes.get() + size > maxBytes) {
+            return exceed(BYTES);
+        }
+        return acceptRatio(e);
+    }
+
+    /**
+     * Check the ratio of declared expanded to compressed size, if the entry header has both.
+     *
+     * @param e archive entry
+     * @return false if a limit is exceeded
+     */
+    public boolean acceptRatio(ArchiveEntry e) {
+        if (e instanceof ZipArchiveEntry) {
+            long size = e.getSize();
+            long compressed = ((ZipArchiveEntry) e).getCompressedSize();
+            if (size > RATIO_GRACE && compressed > 0 && overRatio(size, compressed)) {
+                return exceed(RATIO);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the declared sizes of all entries before any is read, e.g., from a ZIP central directory.
+     *
+     * @param count entry count
+     * @param size  total expanded size
+     * @return false if a limit is exceeded
+     */
+    public boolean acceptTotals(long count, long size) {
+        if (maxEntries >= 0 && entries.get() + count > maxEntries) {
+            return exceed(ENTRIES);
+        }
+        if (maxBytes >= 0 && bytes.get() + size > maxBytes) {
+            return exceed(BYTES);
+        }
+        return true;
+    }
+
+    private boolean overRatio(long expanded, long compressed) {
+        return maxRatio >= 0 && expanded > compressed * maxRatio;
+    }
+
+    /**
+     * Count bytes as an entry is read and check the compression ratio observed.
+     *
+     * @param in    entry content
+     * @param stats compressed and expanded counts for the entry or the stream it is read from, or null
+     * @return stream that fails once a limit is exceeded
+     */
+    public InputStream guard(InputStream in, InputStreamStatistics stats) {
+        return new GuardedInputStream(in, stats);
+    }
+
+    private class GuardedInputStream extends ProxyInputStream {
+        private final InputStreamStatistics stats;
+
+        GuardedInputStream(InputStream in, InputStreamStatistics stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        protected void beforeRead(int n) throws IOException {
+            if (exceeded != null) {
+                throw new IOException("Archive limit exceeded: " + exceeded);
+            }
+        }
+
+        @Override
+        protected void afterRead(int n) throws IOException {
+            if (n <= 0) {
+                return;
+            }
+            long total = bytes.addAndGet(n);
+            if (maxBytes >= 0 && total > maxBytes) {
+                exceed(BYTES);
+            } else if (stats != null) {
+                long expanded = stats.getUncompressedCount();
+                if (expanded > RATIO_GRACE && overRatio(expanded, stats.getCompressedCount())) {
+                    exceed(RATIO);
+                }
+            }
+            if (exceeded != null) {
+                throw new IOException("Archive limit exceeded: " + exceeded);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.collectors;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+/**
+ * Entries of an archive as of its last expansion, by name, with a signature from the entry header: size
+ * and CRC-32 for ZIP entries, size and modification time for TAR and others, as TAR headers carry no CRC of
+ * the content.  An entry whose signature is unchanged need not be read again.  Only entries that were
+ * converted without error are recorded.
+ * <p>
+ * The manifest is a hidden file in the folder the archive expands to, one "signature TAB name" per line.
+ */
+final class ArchiveManifest {
+
+    static final String NAME = ".xtext-manifest";
+
+    private final File file;
+    private final Map<String, String> previous = new HashMap<>();
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    ArchiveManifest(File dir) {
+        file = new File(dir, NAME);
+    }
+
+    /**
+     * Read the manifest of the last expansion, if any.
+     *
+     * @throws IOException on read err
+     */
+    void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    previous.put(line.substring(tab + 1), line.substring(0, tab));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param e entry
+     * @return signature, or null if the header does not give the size
+     */
+    static String signature(ArchiveEntry e) {
+        long size = e.getSize();
+        if (size < 0) {
+            return null;
+        }
+        if (e instanceof ZipArchiveEntry && ((ZipArchiveEntry) e).getCrc() >= 0) {
+            return String.format("%d:%08x", size, ((ZipArchiveEntry) e).getCrc());
+        }
+        long time = e.getLastModifiedDate() != null ? e.getLastModifiedDate().getTime() : 0;
+        return String.format("%d@%d", size, time);
+    }
+
+    /**
+     * An entry unchanged since the last expansion.  It is kept in the manifest.
+     *
+     * @param e entry
+     * @return true if the entry can be skipped
+     */
+    boolean isUnchanged(ArchiveEntry e) {
+        String sig = signature(e);
+        if (sig == null || !sig.equals(previous.get(e.getName()))) {
+            return false;
+        }
+        current.put(e.getName(), sig);
+        return true;
+    }
+
+    /**
+     * Record an entry that was converted.  Call after the entry is read, as some headers give size and CRC
+     * only then.
+     *
+     * @param e entry
+     */
+    void record(ArchiveEntry e) {
+        String sig = signature(e);
+        if (sig != null) {
+            current.put(e.getName(), sig);
+        }
+    }
+
+    /**
+     * Write the manifest.  After a complete expansion it lists only the entries found this time, so entries
+     * removed from the archive are dropped.  Otherwise, e.g., if expansion was stopped at a limit, entries of
+     * the last expansion that were not reached this time are kept.
+     *
+     * @param complete true if every entry of the archive was reached
+     * @throws IOException on write err
+     */
+    void save(boolean complete) throws IOException {
+        Map<String, String> all = current;
+        if (!complete) {
+            all = new HashMap<>(previous);
+            all.putAll(current);
+        }
+        file.getParentFile().mkdirs();
+        File tmp = new File(file.getParentFile(), NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : all.entrySet()) {
+                writer.write(e.getValue());
+                writer.write('\t');
+                writer.write(e.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -18,7 +18,18 @@
 package org.opensextant.xtext.collectors;
 
 import java.io.*;
-import java.util.zip.GZIPInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -27,6 +38,10 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipUtils;
+import org.apache.commons.compress.utils.InputStreamStatistics;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.opensextant.ConfigException;
@@ -48,6 +63,30 @@ public class ArchiveNavigator implements Collector {
     private ExclusionFilter filter = null;
     private Converter converter = null;
     public boolean overwrite = false;
+    /**
+     * Save each entry to the working dir and convert the saved file, as opposed to converting entries as they
+     * are read from the archive.  In-stream, the converter is given the entry content and the path it would
+     * be saved to; only entries that need a file are written.
+     */
+    public boolean exportEntries = true;
+    /**
+     * Threads used to convert ZIP entries.  Default is 1, entries are converted in the order they are stored.
+     */
+    public int threads = 1;
+    /**
+     * Depth, size and ratio limits, shared with the navigators of nested archives.  Null for no limits.
+     */
+    public ArchiveLimits limits = null;
+    /**
+     * Keep a manifest of entries converted, and on later runs skip entries whose size and CRC (or time) are
+     * unchanged.  Ignored in overwrite mode, but the manifest is still written.
+     */
+    public boolean useManifest = false;
+    private ArchiveManifest manifest = null;
+
+    private static final int IO_BUFFER = 0x10000;
+    private static final Set<String> compoundTypes = new HashSet<>(
+            Arrays.asList("zip", "tar", "gz", "tgz", "pst", "mbox"));
 
     /**
      * Given a working temp folder and a file filter unpack archives.  Teh working dir, saveTo, is not created.
@@ -93,22 +132,158 @@ public class ArchiveNavigator implements Collector {
 
         File archivetmp = null;
 
+        if (useManifest) {
+            manifest = new ArchiveManifest(saveDir);
+            if (!overwrite) {
+                manifest.load();
+            }
+        }
+        boolean complete = false;
+        try {
+            archivetmp = expand(ext);
+            complete = !stopped();
+        } finally {
+            if (manifest != null) {
+                manifest.save(complete);
+            }
+        }
+        log.info("Archive FILE={} has been processed to DIR={}", currentArchive, archivetmp);
+    }
+
+    private File expand(String ext) throws IOException {
+        File archivetmp;
         if (ext.equalsIgnoreCase("zip")) {
             archivetmp = unzip(currentArchive);
         } else if (ext.equalsIgnoreCase("tar")) {
             archivetmp = untar(currentArchive);
         } else if (ext.equalsIgnoreCase("gz") || ext.equalsIgnoreCase("tgz")
                 || ext.equalsIgnoreCase("tar.gz")) {
-            String basename = FilenameUtils.getBaseName(currentArchive.getName());
-            // We assume the file is a tarball. First unzip it
-            File tarFile = gunzipAsTAR(currentArchive, basename);
-
-            // Then untar it
-            archivetmp = untar(tarFile);
+            archivetmp = gunzip(currentArchive);
         } else {
             throw new IOException("Unsupported archive type: EXT=" + ext);
         }
-        log.info("Archive FILE={} has been processed to DIR={}", currentArchive, archivetmp);
+        return archivetmp;
+    }
+
+    /**
+     * Unzip through the central directory.  Entries are read with random access, so each is read by its
+     * stored size and method regardless of data descriptors, and with threads &gt; 1 independent entries are
+     * converted concurrently, largest first.  Nested archives, PST and mailbox files are converted after
+     * that, one at a time.  A ZIP without a readable central directory is read sequentially instead.
+     *
+     * @param zipFile ZIP archive
+     * @return working dir
+     * @throws IOException if the archive cannot be read
+     */
+    public File unzip(File zipFile) throws IOException {
+        ZipFile zip;
+        try {
+            zip = ZipFile.builder().setFile(zipFile).get();
+        } catch (IOException err) {
+            log.info("No central directory, reading ZIP sequentially FILE={}: {}", zipFile, err.getMessage());
+            return unzipStream(zipFile);
+        }
+
+        File workingDir = saveDir;
+        String root = workingDir.getAbsolutePath();
+        try {
+            List<ZipArchiveEntry> entries = new ArrayList<>();
+            List<ZipArchiveEntry> nested = new ArrayList<>();
+            long count = 0;
+            long size = 0;
+            Enumeration<ZipArchiveEntry> all = zip.getEntriesInPhysicalOrder();
+            while (all.hasMoreElements()) {
+                ZipArchiveEntry zipEntry = all.nextElement();
+                if (filterEntry(zipEntry)) {
+                    continue;
+                }
+                if (!zip.canReadEntryData(zipEntry)) {
+                    log.error("Unable to read item, encrypted or unsupported method, FILE={}!{}",
+                            zipFile.getName(), zipEntry.getName());
+                    continue;
+                }
+                if (limits != null && !limits.acceptRatio(zipEntry)) {
+                    log.warn("Archive limit exceeded: {}, FILE={}!{}", limits.getExceeded(), zipFile,
+                            zipEntry.getName());
+                    return workingDir;
+                }
+                ++count;
+                size += Math.max(zipEntry.getSize(), 0);
+                if (threads > 1 && isCompound(zipEntry.getName())) {
+                    nested.add(zipEntry);
+                } else {
+                    entries.add(zipEntry);
+                }
+            }
+            if (limits != null && !limits.acceptTotals(count, size)) {
+                // Declared in the central directory; nothing is read.
+                log.warn("Archive limit exceeded: {}, FILE={}", limits.getExceeded(), zipFile);
+                return workingDir;
+            }
+
+            if (threads > 1) {
+                convertConcurrently(zip, zipFile, entries, root);
+                entries = nested;
+            }
+            for (ZipArchiveEntry zipEntry : entries) {
+                if (stopped()) {
+                    break;
+                }
+                convertZipEntry(zip, zipFile, zipEntry, root);
+            }
+        } finally {
+            zip.close();
+        }
+        return workingDir;
+    }
+
+    /**
+     * Convert entries on a pool of threads, largest first so a large entry does not start last.
+     */
+    private void convertConcurrently(ZipFile zip, File zipFile, List<ZipArchiveEntry> entries, String root)
+            throws IOException {
+        entries.sort(Comparator.comparingLong(ZipArchiveEntry::getSize).reversed());
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "xtext-zip");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> tasks = new ArrayList<>(entries.size());
+            for (ZipArchiveEntry zipEntry : entries) {
+                tasks.add(pool.submit(() -> convertZipEntry(zip, zipFile, zipEntry, root)));
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException err) {
+                    log.error("Unable to convert item, FILE=" + zipFile.getName(), err.getCause());
+                }
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting FILE=" + zipFile.getName(), err);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void convertZipEntry(ZipFile zip, File zipFile, ZipArchiveEntry zipEntry, String root) {
+        if (stopped()) {
+            return;
+        }
+        try (InputStream in = zip.getInputStream(zipEntry)) {
+            convertEntry(zipEntry, in, in instanceof InputStreamStatistics ? (InputStreamStatistics) in : null, root);
+        } catch (IOException err) {
+            log.error("Unable to save item, FILE=" + zipFile.getName() + "!" + zipEntry.getName(), err);
+        }
+    }
+
+    /**
+     * Items that are traversed, rather than converted, by the converter.
+     */
+    private static boolean isCompound(String name) {
+        return compoundTypes.contains(FilenameUtils.getExtension(name).toLowerCase());
     }
 
     /*
@@ -117,22 +292,20 @@ public class ArchiveNavigator implements Collector {
      * so there may be Zip-specific stuff here, ... but the approach is the
      * same.
      */
-    public File unzip(File zipFile) throws IOException {
+    private File unzipStream(File zipFile) throws IOException {
 
         try (InputStream input = new BufferedInputStream(new FileInputStream(zipFile));
              ZipArchiveInputStream in = new ArchiveStreamFactory().createArchiveInputStream(
                      "zip", input)) {
             File workingDir = saveDir;
             ZipArchiveEntry zipEntry;
-            while ((zipEntry = in.getNextEntry()) != null) {
+            while (!stopped() && (zipEntry = in.getNextEntry()) != null) {
                 if (filterEntry(zipEntry)) {
                     continue;
                 }
 
                 try {
-                    File tmpFile = saveArchiveEntry(zipEntry, in, workingDir);
-                    converter.convert(tmpFile);
-
+                    convertEntry(zipEntry, in, in, workingDir.getAbsolutePath());
                 } catch (IOException err) {
                     log.error(
                             "Unable to save item, FILE=" + zipEntry.getName() + "!"
@@ -147,26 +320,48 @@ public class ArchiveNavigator implements Collector {
     }
 
     /**
-     * @param theFile archive file
-     * @param fname   filename
-     * @return TAR file path for result.
+     * Decompress as the content is read.  A tarball is untarred from the stream; any other gzip file holds
+     * one file, which is converted as if it were an entry named by the gzip header or the archive name.
+     *
+     * @param gzFile gzip file
+     * @return working dir
      * @throws IOException on I/O failure
      */
-    private File gunzipAsTAR(File theFile, String fname) throws IOException {
-
-        // TODO:  more testing on this particular case:  gunzip *.gz *.tgz *.tar.gz -- a mix of tar and gunzip
-        String outFilename = getWorkingDir() + '/' + fname + ".tar";
-        File outFile = new File(outFilename);
-
-        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new FileInputStream(theFile));
-             OutputStream out = new BufferedOutputStream(new FileOutputStream(outFilename))
-        ) {
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = gzipInputStream.read(buf)) > 0) {
-                out.write(buf, 0, len);
+    private File gunzip(File gzFile) throws IOException {
+        try (GzipCompressorInputStream gz = GzipCompressorInputStream.builder()
+                .setInputStream(new BufferedInputStream(new FileInputStream(gzFile), IO_BUFFER))
+                .setDecompressConcatenated(true).get();
+             InputStream input = new BufferedInputStream(gz, IO_BUFFER)) {
+
+            if (isTar(input)) {
+                return untar(input, gz, gzFile.getName(), FilenameUtils.getBaseName(gzFile.getName()));
+            }
+
+            String name = gz.getMetaData().getFileName();
+            if (name == null || name.isEmpty()) {
+                name = GzipUtils.getUncompressedFileName(gzFile.getName());
+            }
+            name = FilenameUtils.getName(name);
+            if (!filter.filterOutFile(name)) {
+                GzipArchiveEntry entry = new GzipArchiveEntry(name, gz.getMetaData().getModificationInstant().toEpochMilli());
+                try {
+                    convertEntry(entry, input, gz, getWorkingDir());
+                } catch (IOException err) {
+                    log.error("Unable to save item, FILE=" + gzFile.getName() + "!" + name, err);
+                }
             }
-            return outFile;
+            return saveDir;
+        }
+    }
+
+    /**
+     * Test for a TAR header at the start of the stream, which must support mark/reset.
+     */
+    private static boolean isTar(InputStream input) throws IOException {
+        try {
+            return "tar".equals(ArchiveStreamFactory.detect(input));
+        } catch (ArchiveException notArchive) {
+            return false;
         }
     }
 
@@ -176,31 +371,43 @@ public class ArchiveNavigator implements Collector {
      * them.
      */
     public File untar(File tarFile) throws IOException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(tarFile), IO_BUFFER)) {
+            return untar(input, null, tarFile.getName(), FilenameUtils.getBaseName(tarFile.getPath()));
+        }
+    }
+
+    /**
+     * Un-TAR from a stream.
+     *
+     * @param input   TAR content
+     * @param stats   compression counts if the TAR is compressed, or null
+     * @param tarName archive name, for logging
+     * @param dirName name of working dir for entries
+     * @return working dir
+     * @throws IOException on I/O failure
+     */
+    private File untar(InputStream input, InputStreamStatistics stats, String tarName, String dirName)
+            throws IOException {
 
-        String _working = FilenameUtils.concat(getWorkingDir(),
-                FilenameUtils.getBaseName(tarFile.getPath()));
+        String _working = FilenameUtils.concat(getWorkingDir(), dirName);
         if (_working == null) {
-            throw new IOException("Invalid archive path for " + tarFile.getPath());
+            throw new IOException("Invalid archive path for " + tarName);
         }
         File workingDir = new File(_working);
         workingDir.mkdir();
 
-        try (InputStream input = new BufferedInputStream(new FileInputStream(tarFile));
-             TarArchiveInputStream in = new ArchiveStreamFactory().createArchiveInputStream(
-                     "tar", input)
-        ) {
+        try (TarArchiveInputStream in = new ArchiveStreamFactory().createArchiveInputStream("tar", input)) {
             TarArchiveEntry tarEntry;
-            while ((tarEntry = in.getNextEntry()) != null) {
+            while (!stopped() && (tarEntry = in.getNextEntry()) != null) {
                 if (filterEntry(tarEntry)) {
                     continue;
                 }
 
                 try {
-                    File tmpFile = saveArchiveEntry(tarEntry, in, _working);
-                    converter.convert(tmpFile);
+                    convertEntry(tarEntry, in, stats, _working);
                 } catch (IOException err) {
                     log.error(
-                            "Unable to save item, FILE=" + tarFile.getName() + "!"
+                            "Unable to save item, FILE=" + tarName + "!"
                                     + tarEntry.getName(), err);
                 }
             }
@@ -211,25 +418,42 @@ public class ArchiveNavigator implements Collector {
     }
 
     /**
-     * save to root dir
+     * Convert the entry the archive stream is positioned at, saving it first if entries are exported.
      *
      * @param e         archive entry
      * @param archiveio inputstream
+     * @param stats     compression counts for the entry or archive, or null
      * @param root      root folder
-     * @return output folder where archive was expanded/converted
-     * @throws IOException if entry could not be saved to disk, e.g., outputDir
+     * @throws IOException if entry could not be saved or converted
      */
-    private File saveArchiveEntry(ArchiveEntry e, InputStream archiveio, File root)
+    private void convertEntry(ArchiveEntry e, InputStream archiveio, InputStreamStatistics stats, String root)
             throws IOException {
-        return saveArchiveEntry(e, archiveio, root.getAbsolutePath());
+        if (manifest != null && manifest.isUnchanged(e)) {
+            log.debug("ARCHIVE_ENTRY={} unchanged", e.getName());
+            return;
+        }
+        if (limits != null) {
+            if (!limits.accept(e)) {
+                log.warn("Archive limit exceeded: {}, ENTRY={}", limits.getExceeded(), e.getName());
+                return;
+            }
+            archiveio = limits.guard(archiveio, stats);
+        }
+        if (exportEntries) {
+            converter.convert(saveArchiveEntry(e, archiveio, root));
+        } else {
+            log.debug("ARCHIVE_ENTRY={} in-stream", e.getName());
+            converter.convert(archiveio, new EntryFile(entryTarget(e, root), e));
+        }
+        if (manifest != null && !stopped()) {
+            manifest.record(e);
+        }
     }
 
     /**
-     *
+     * Path of the entry under the root dir.
      */
-    private File saveArchiveEntry(ArchiveEntry E, InputStream archiveio, String root)
-            throws IOException {
-
+    private static String entryTarget(ArchiveEntry E, String root) throws IOException {
         // Note: using native OS file path is fine here.  As long as you do not
         // try any string mechanics on paths.
         //
@@ -237,7 +461,22 @@ public class ArchiveNavigator implements Collector {
         if (targetPath == null) {
             throw new IOException("Invalid archive entry target for " + E.getName());
         }
-        File target = new File(targetPath);
+        return targetPath;
+    }
+
+    /**
+     * save to root dir
+     *
+     * @param E         archive entry
+     * @param archiveio inputstream
+     * @param root      root folder
+     * @return saved entry
+     * @throws IOException if entry could not be saved to disk, e.g., outputDir
+     */
+    private File saveArchiveEntry(ArchiveEntry E, InputStream archiveio, String root)
+            throws IOException {
+
+        File target = new File(entryTarget(E, root));
         if (target.exists() && !overwrite) {
             return target;
         }
@@ -246,10 +485,77 @@ public class ArchiveNavigator implements Collector {
         log.debug("ARCHIVE_ENTRY={}", E.getName());
         try (OutputStream output = new FileOutputStream(target)) {
             IOUtils.copy(archiveio, output);
+        } catch (IOException err) {
+            // Do not leave a partial entry to be taken for the whole.
+            target.delete();
+            throw err;
         }
         return target;
     }
 
+    /**
+     * The one file in a gzip file.
+     */
+    private static class GzipArchiveEntry implements ArchiveEntry {
+        private final String name;
+        private final long time;
+
+        GzipArchiveEntry(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return SIZE_UNKNOWN;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public Date getLastModifiedDate() {
+            return time > 0 ? new Date(time) : null;
+        }
+    }
+
+    /**
+     * Path of an entry that was not saved.  Size and time come from the entry header, so conversions carry
+     * the same file metadata as if it had been saved.  Once the file is written, it is the file on disk.
+     */
+    private static class EntryFile extends File {
+        private static final long serialVersionUID = 1L;
+        private final long size;
+        private final long time;
+
+        EntryFile(String path, ArchiveEntry e) {
+            super(path);
+            size = e.getSize();
+            time = e.getLastModifiedDate() != null ? e.getLastModifiedDate().getTime() : 0L;
+        }
+
+        @Override
+        public long length() {
+            return isFile() ? super.length() : Math.max(size, 0);
+        }
+
+        @Override
+        public long lastModified() {
+            return isFile() ? super.lastModified() : time;
+        }
+    }
+
+    private boolean stopped() {
+        return limits != null && limits.isExceeded();
+    }
+
     private boolean filterEntry(ArchiveEntry E) {
         if (E.isDirectory()) {
             return true;
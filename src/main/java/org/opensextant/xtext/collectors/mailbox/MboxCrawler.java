@@ -0,0 +1,475 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.collectors.mailbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MailDateFormat;
+import javax.mail.internet.MimeUtility;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.opensextant.ConfigException;
+import org.opensextant.util.FileUtility;
+import org.opensextant.xtext.Converter;
+import org.opensextant.xtext.collectors.CollectionListener;
+import org.opensextant.xtext.collectors.Collector;
+import org.opensextant.xtext.converters.MessageConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MboxCrawler splits a Unix mbox file into individual RFC822 messages, saving each as an .eml file,
+ * and converts each message as it is found.  The mbox is read as a stream; only message headers are
+ * held in memory, so mbox files of any size can be handled.
+ * <p>
+ * Given SomeFile.mbox, the resultant output folder created will look like:
+ * <pre>
+ *    SomeFile_mbox/
+ *      +-- 2014-04-05/
+ *          +-- 000001_RE__Shipping_Invoice.eml
+ *          +-- 000002_Lunch.eml
+ *      +-- undated/
+ *          +-- 000003_NO_SUBJECT.eml
+ *  </pre>
+ * <p>
+ * Messages are separated by "From " lines that follow a blank line.  Quoted "&gt;From " lines in the body are
+ * unquoted (mboxrd).  With a converter set, each saved message goes through XText, and so MessageConverter,
+ * like any other .eml file.  Conversion can run on several threads while the mbox is being split.
+ * <p>
+ * Usage:
+ *
+ * <code>
+ * crawler = MboxCrawler( path )
+ * crawler.setOutputDir(dir)
+ * crawler.configure()
+ * crawler.collect()
+ * </code>
+ */
+public class MboxCrawler implements Collector {
+
+    /**
+     * A collection listener to consult as far as how to record the found content.
+     */
+    protected CollectionListener listener = null;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private static final DateTimeFormatter FOLDER_DATE = DateTimeFormat.forPattern("yyyy-MM-dd");
+    private static final byte[] FROM_LINE = "From ".getBytes();
+    /* Lines longer than this are written out in pieces. */
+    private static final int LINE_BUFFER_SIZE = 0x2000;
+    /* Headers larger than this are not parsed any further */
+    private static final int MAX_HEADER_SIZE = 0x40000;
+
+    private File mbox = null;
+    private String defaultOutputName = null;
+    private File outputDir = null; // The parent folder that will contain the output.  /tmp/
+    private File outputMboxDir = null; // The output folder.  /tmp/My_mbox
+    private Converter converter = null;
+    private int threads = 1;
+
+    /**
+     * Incremental mode simply allows you to reuse the same folder to contain the output interleaving new items
+     */
+    public boolean incrementalMode = true;
+
+    /**
+     * Overwite mode allows the crawler to overwrite existing messages by the same name.
+     */
+    public boolean overwriteMode = false;
+
+    /* State of the message being split out */
+    private final byte[] line = new byte[LINE_BUFFER_SIZE];
+    private boolean lineComplete = false;
+    private final byte[] readBuffer = new byte[0x10000];
+    private int readPos = 0;
+    private int readLimit = 0;
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    private OutputStream message = null;
+    private File messageFile = null;
+    private int messageCount = 0;
+
+    /**
+     * @param mboxFile input mbox
+     * @throws IOException if file does not exist
+     */
+    public MboxCrawler(File mboxFile) throws IOException {
+        mbox = mboxFile;
+        if (!mbox.exists()) {
+            throw new IOException("Mbox file does not exist: " + mboxFile.getAbsolutePath());
+        }
+        defaultOutputName = FilenameUtils.getBaseName(mbox.getName()) + "_mbox";
+    }
+
+    /**
+     * @param mboxFilepath input mbox
+     * @throws IOException if file does not exist
+     */
+    public MboxCrawler(String mboxFilepath) throws IOException {
+        this(new File(mboxFilepath));
+    }
+
+    /**
+     * Set output of the mbox (outputMboxDir) or its parent path (outputDir), then configure.
+     *
+     * @throws ConfigException if output folder could not be set
+     */
+    public void configure() throws ConfigException {
+        if (outputMboxDir == null) {
+            if (outputDir == null || !outputDir.exists()) {
+                throw new ConfigException("Output Dir is not configured or does not exist");
+            }
+            outputMboxDir = new File(outputDir, defaultOutputName);
+            if (!incrementalMode && outputMboxDir.exists()) {
+                throw new ConfigException("Output Dir contains target, but you are not in overwrite mode");
+            }
+        }
+        if (!outputMboxDir.exists()) {
+            try {
+                FileUtility.makeDirectory(outputMboxDir);
+            } catch (IOException err) {
+                throw new ConfigException("Unable to create target", err);
+            }
+        }
+
+        log.info(" Input: mbox =  " + mbox.getAbsolutePath());
+        log.info(" Modes: Incremental =" + incrementalMode);
+        log.info(" Modes: Overwrite =" + overwriteMode);
+        log.info(" Output: Target " + outputMboxDir);
+    }
+
+    @Override
+    public String getName() {
+        return "MboxCrawler by XText";
+    }
+
+    /**
+     * If a converter is provided, it will be used to convert each message and its attachments.
+     * Caller is responsible for mananging the XText caching options.
+     *
+     * @param conversionManager XText instance, or another converter
+     */
+    public void setConverter(Converter conversionManager) {
+        converter = conversionManager;
+    }
+
+    /**
+     * @param l listener notified of each saved message
+     */
+    public void setListener(CollectionListener l) {
+        listener = l;
+    }
+
+    /**
+     * Number of threads converting messages, while one thread splits the mbox. Default: 1, convert in line.
+     *
+     * @param n thread count
+     */
+    public void setThreads(int n) {
+        threads = Math.max(1, n);
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * @param mboxDir path of mbox output
+     */
+    public void setOutputMboxDir(File mboxDir) {
+        this.outputMboxDir = mboxDir;
+    }
+
+    /**
+     * @return number of messages found by last collect()
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    @Override
+    public void collect() throws IOException, ConfigException {
+        log.info("Splitting mbox FILE={}", mbox);
+        messageCount = 0;
+
+        ThreadPoolExecutor pool = null;
+        List<Future<?>> pending = new ArrayList<>();
+        if (threads > 1 && converter != null) {
+            // Bounded queue; when full the splitting thread converts the message itself.
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(2 * threads), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        readPos = 0;
+        readLimit = 0;
+        try (InputStream in = new FileInputStream(mbox)) {
+            boolean lineStart = true;
+            boolean prevBlank = true;
+            int len;
+            while ((len = readLine(in)) > 0) {
+                if (lineStart && prevBlank && startsWith(line, 0, len, FROM_LINE)) {
+                    File done = finishMessage();
+                    dispatch(done, pool, pending);
+                    startMessage();
+                    prevBlank = false;
+                    lineStart = lineComplete;
+                    // Rest of a very long envelope line is skipped.
+                    while (!lineStart && (len = readLine(in)) > 0) {
+                        lineStart = lineComplete;
+                    }
+                    continue;
+                }
+
+                int offset = 0;
+                if (lineStart && isQuotedFrom(line, len)) {
+                    offset = 1;
+                }
+                if (messageCount == 0) {
+                    // Content before the first "From " line is not a message.
+                    prevBlank = lineStart && lineComplete && isBlank(line, len);
+                    lineStart = lineComplete;
+                    continue;
+                }
+                writeLine(offset, len, lineStart && lineComplete && isBlank(line, len));
+                prevBlank = lineStart && lineComplete && isBlank(line, len);
+                lineStart = lineComplete;
+            }
+            File done = finishMessage();
+            dispatch(done, pool, pending);
+
+            checkConversions(pending, true);
+        } finally {
+            if (message != null) {
+                // Failed mid-message.
+                IOUtils.closeQuietly(message);
+                message = null;
+            }
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        log.info("Messages found: {} in FILE={}", messageCount, mbox);
+    }
+
+    /**
+     * Read one line, or as much of it as fits the line buffer.  lineComplete is false if the line continues.
+     */
+    private int readLine(InputStream in) throws IOException {
+        int n = 0;
+        lineComplete = false;
+        while (n < line.length) {
+            if (readPos == readLimit) {
+                readLimit = in.read(readBuffer);
+                readPos = 0;
+                if (readLimit <= 0) {
+                    readLimit = 0;
+                    break;
+                }
+            }
+            byte b = readBuffer[readPos++];
+            line[n++] = b;
+            if (b == '\n') {
+                lineComplete = true;
+                break;
+            }
+        }
+        return n;
+    }
+
+    private static boolean startsWith(byte[] data, int off, int len, byte[] prefix) {
+        if (len - off < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (data[off + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * mboxrd: "&gt;From ", "&gt;&gt;From ", ... lose one "&gt;"
+     */
+    private static boolean isQuotedFrom(byte[] data, int len) {
+        int i = 0;
+        while (i < len && data[i] == '>') {
+            ++i;
+        }
+        return i > 0 && startsWith(data, i, len, FROM_LINE);
+    }
+
+    private static boolean isBlank(byte[] data, int len) {
+        return (len == 1 && data[0] == '\n') || (len == 2 && data[0] == '\r' && data[1] == '\n');
+    }
+
+    private void startMessage() {
+        ++messageCount;
+        header.reset();
+        message = null;
+        messageFile = null;
+    }
+
+    /**
+     * Headers are collected until the first blank line, then the output file is chosen and the rest
+     * of the message is streamed to it.
+     */
+    private void writeLine(int offset, int len, boolean blank) throws IOException {
+        if (message != null) {
+            message.write(line, offset, len - offset);
+            return;
+        }
+        header.write(line, offset, len - offset);
+        if (blank || header.size() > MAX_HEADER_SIZE) {
+            openMessage();
+        }
+    }
+
+    private void openMessage() throws IOException {
+        String subj = null;
+        String dateKey = "undated";
+        try {
+            InternetHeaders hdrs = new InternetHeaders(new ByteArrayInputStream(header.toByteArray()));
+            subj = hdrs.getHeader("Subject", null);
+            if (subj != null) {
+                subj = MimeUtility.decodeText(MimeUtility.unfold(subj));
+            }
+            String dt = hdrs.getHeader("Date", null);
+            if (dt != null) {
+                Date d = new MailDateFormat().parse(dt);
+                dateKey = FOLDER_DATE.print(d.getTime());
+            }
+        } catch (MessagingException | ParseException err) {
+            log.debug("Message #{} headers not parsed fully", messageCount, err);
+        }
+        if (StringUtils.isBlank(subj)) {
+            subj = "NO_SUBJECT";
+        }
+        String msgName = MessageConverter.createSafeFilename(subj);
+        if (msgName.length() > OutlookPSTCrawler.MESSAGE_FOLDER_LEN) {
+            msgName = msgName.substring(0, OutlookPSTCrawler.MESSAGE_FOLDER_LEN);
+        }
+
+        File dateFolder = new File(outputMboxDir, dateKey);
+        if (!dateFolder.exists()) {
+            FileUtility.makeDirectory(dateFolder);
+        }
+        messageFile = new File(dateFolder, String.format("%06d_%s.eml", messageCount, msgName));
+        if (messageFile.exists() && !overwriteMode) {
+            // Skip it, but the rest of the message must still be read.
+            message = NullOutputStream.INSTANCE;
+        } else {
+            message = new FileOutputStream(messageFile);
+        }
+        header.writeTo(message);
+        header.reset();
+    }
+
+    /**
+     * @return file of the completed message, or null if nothing new was saved
+     */
+    private File finishMessage() throws IOException {
+        if (messageCount == 0) {
+            return null;
+        }
+        if (message == null) {
+            // Message with headers only.
+            openMessage();
+        }
+        boolean saved = message != NullOutputStream.INSTANCE;
+        message.close();
+        message = null;
+        return saved ? messageFile : null;
+    }
+
+    private void dispatch(File msgFile, ThreadPoolExecutor pool, List<Future<?>> pending) throws IOException {
+        if (msgFile == null) {
+            return;
+        }
+        if (listener != null) {
+            listener.collected(msgFile);
+        }
+        if (converter == null) {
+            return;
+        }
+        if (pool == null) {
+            convertMessage(msgFile);
+            return;
+        }
+        checkConversions(pending, false);
+        pending.add(pool.submit(() -> {
+            convertMessage(msgFile);
+            return null;
+        }));
+    }
+
+    /**
+     * Report failed conversions and drop finished ones.
+     *
+     * @param pending conversions submitted
+     * @param wait    true to wait for all to finish
+     */
+    private void checkConversions(List<Future<?>> pending, boolean wait) throws IOException {
+        Iterator<Future<?>> it = pending.iterator();
+        while (it.hasNext()) {
+            Future<?> f = it.next();
+            if (!wait && !f.isDone()) {
+                continue;
+            }
+            it.remove();
+            try {
+                f.get();
+            } catch (ExecutionException err) {
+                log.error("Conversion failed", err.getCause());
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", err);
+            }
+        }
+    }
+
+    private void convertMessage(File msgFile) throws IOException {
+        try {
+            converter.convert(msgFile);
+        } catch (ConfigException err) {
+            throw new IOException("Unable to convert message " + msgFile, err);
+        }
+    }
+}
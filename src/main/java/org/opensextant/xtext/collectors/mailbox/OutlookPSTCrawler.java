@@ -25,7 +25,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.opensextant.ConfigException;
 import org.opensextant.util.FileUtility;
 import org.opensextant.util.TextUtils;
-import org.opensextant.xtext.XText;
+import org.opensextant.xtext.Converter;
 import org.opensextant.xtext.collectors.CollectionListener;
 import org.opensextant.xtext.collectors.Collector;
 import org.opensextant.xtext.converters.MessageConverter;
@@ -37,8 +37,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OutlookPSTCrawler traverses a PST file and pulls out: E-Mail files + attachments, Contacts, Appointments, etc.
@@ -97,6 +103,24 @@ public class OutlookPSTCrawler implements Collector {
      */
     public boolean overwriteMode = false;
 
+    /**
+     * Threads used to read the PST.  With more than one, folder items are read in batches on a pool of threads,
+     * each with its own PST file handle, and attachments are converted on a second pool of as many threads while
+     * reading goes on.  The listener is then called from those threads.
+     */
+    public int threads = 1;
+
+    private int itemBatchSize = 100;
+
+    /**
+     * Folder items read per task, when threads &gt; 1.  Default: 100.
+     *
+     * @param n items per task
+     */
+    public void setItemBatchSize(int n) {
+        itemBatchSize = Math.max(1, n);
+    }
+
     /**
      * @param pstFilepath input PST
      * @throws IOException if file fails to load
@@ -187,13 +211,21 @@ public class OutlookPSTCrawler implements Collector {
         log.info("Traversing PST Folders for FILE={}", pst);
         try {
             PSTFile pstStore = new PSTFile(pst);
-            processFolder(pstStore.getRootFolder());
+            try {
+                if (threads > 1) {
+                    collectConcurrently(pstStore);
+                } else {
+                    processFolder(pstStore.getRootFolder());
+                }
+            } finally {
+                pstStore.close();
+            }
         } catch (PSTException err) {
             throw new ConfigException("Failure with PST traversal", err);
         }
     }
 
-    private XText converter = null;
+    private Converter converter = null;
 
     /**
      * If a converter is provided, it will be used to convert attachments.
@@ -202,9 +234,9 @@ public class OutlookPSTCrawler implements Collector {
      * <p>
      * Caller is responsible for mananging the XText caching options.
      *
-     * @param conversionManager XText instance
+     * @param conversionManager XText instance, or another converter
      */
-    public void setConverter(XText conversionManager) {
+    public void setConverter(Converter conversionManager) {
         converter = conversionManager;
     }
 
@@ -239,31 +271,172 @@ public class OutlookPSTCrawler implements Collector {
         if (count > 0) {
             PSTObject msg = null;
             while ((msg = folder.getNextChild()) != null) {
-                // As libPST is organized with PSTMessage (email) being a base class, it must only be used as a default.
-                // Try all other subclasses first.
-                //
-                String savedItem = null;
-                if (msg instanceof PSTContact) {
-                    savedItem = processContact("Contacts", folder.getDisplayName(),
-                            (PSTContact) msg);
-                } else if (msg instanceof PSTDistList) {
-                    savedItem = processDistList("Lists", folder.getDisplayName(), (PSTDistList) msg);
-                } else if (msg instanceof PSTAppointment) {
-                    savedItem = processAppointment("Appointments", folder.getDisplayName(),
-                            (PSTAppointment) msg);
-                } else if (msg instanceof PSTMessage) {
-                    processMessage(folder.getDisplayName(), (PSTMessage) msg);
-                } else {
-                    log.info("\tItem: {}; Type:{} created at {}", msg.getDisplayName(),
-                            msg.getMessageClass(), msg.getCreationTime());
-                }
+                processItem(folder.getDisplayName(), msg);
+            }
+        }
+        --depth;
+    }
 
-                if (savedItem != null && listener != null) {
-                    listener.collected(new File(savedItem));
+    /**
+     * Save one folder item and report it to the listener.
+     *
+     * @param folderName display name of the containing folder
+     * @param msg        found item
+     * @throws PSTException    PST API error
+     * @throws IOException     I/O failure
+     * @throws ConfigException XText configuration error
+     */
+    protected void processItem(String folderName, PSTObject msg) throws PSTException, IOException,
+            ConfigException {
+        // As libPST is organized with PSTMessage (email) being a base class, it must only be used as a default.
+        // Try all other subclasses first.
+        //
+        String savedItem = null;
+        if (msg instanceof PSTContact) {
+            savedItem = processContact("Contacts", folderName, (PSTContact) msg);
+        } else if (msg instanceof PSTDistList) {
+            savedItem = processDistList("Lists", folderName, (PSTDistList) msg);
+        } else if (msg instanceof PSTAppointment) {
+            savedItem = processAppointment("Appointments", folderName, (PSTAppointment) msg);
+        } else if (msg instanceof PSTMessage) {
+            processMessage(folderName, (PSTMessage) msg);
+        } else {
+            log.info("\tItem: {}; Type:{} created at {}", msg.getDisplayName(),
+                    msg.getMessageClass(), msg.getCreationTime());
+        }
+
+        if (savedItem != null && listener != null) {
+            listener.collected(new File(savedItem));
+        }
+    }
+
+    /* Attachment conversions, while reading concurrently */
+    private ExecutorService conversions = null;
+
+    /**
+     * Read the PST on a pool of threads.  The folder tree is walked here, and the items of each folder are
+     * handed out in batches by node ID.  java-libpst is not thread-safe, so each reading thread opens its own
+     * PSTFile and loads its items from that.
+     */
+    private void collectConcurrently(PSTFile pstStore) throws PSTException, IOException {
+        List<ItemBatch> batches = new ArrayList<>();
+        listFolders(pstStore.getRootFolder(), 1, batches);
+        log.info("Reading {} item batches on {} threads, FILE={}", batches.size(), threads, pst);
+
+        List<PSTFile> handles = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<PSTFile> handle = new ThreadLocal<>();
+        ExecutorService readers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "xtext-pst");
+            t.setDaemon(true);
+            return t;
+        });
+        if (converter != null) {
+            conversions = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "xtext-pst-convert");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        try {
+            List<Future<?>> tasks = new ArrayList<>(batches.size());
+            for (ItemBatch batch : batches) {
+                tasks.add(readers.submit(() -> {
+                    PSTFile store = handle.get();
+                    if (store == null) {
+                        store = new PSTFile(pst);
+                        handle.set(store);
+                        handles.add(store);
+                    }
+                    for (Integer node : batch.nodes) {
+                        PSTObject msg = PSTObject.detectAndLoadPSTObject(store, node);
+                        if (msg != null) {
+                            processItem(batch.folderName, msg);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int b = 0; b < tasks.size(); ++b) {
+                try {
+                    tasks.get(b).get();
+                } catch (ExecutionException err) {
+                    log.error("Unable to read items of folder " + batches.get(b).folderName + ", FILE=" + pst,
+                            err.getCause());
                 }
             }
+            readers.shutdown();
+            if (conversions != null) {
+                conversions.shutdown();
+                conversions.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading FILE=" + pst, err);
+        } finally {
+            readers.shutdownNow();
+            if (conversions != null) {
+                conversions.shutdownNow();
+                conversions = null;
+            }
+            for (PSTFile store : handles) {
+                store.close();
+            }
         }
-        --depth;
+    }
+
+    /**
+     * Walk the folder tree, splitting the items of each folder into batches.
+     */
+    private void listFolders(PSTFolder folder, int level, List<ItemBatch> batches)
+            throws PSTException, IOException {
+        log.info("Folder:" + folder.getDisplayName());
+        if (level >= maxDepth) {
+            log.error("MAX DEPTH reached. Avoid infinite recursion");
+            return;
+        }
+        if (folder.hasSubfolders()) {
+            for (PSTFolder child : folder.getSubFolders()) {
+                listFolders(child, level + 1, batches);
+            }
+        }
+        if (folder.getContentCount() > 0) {
+            List<Integer> nodes = folder.getChildDescriptorNodes();
+            for (int start = 0; start < nodes.size(); start += itemBatchSize) {
+                int end = Math.min(start + itemBatchSize, nodes.size());
+                batches.add(new ItemBatch(folder.getDisplayName(), new ArrayList<>(nodes.subList(start, end))));
+            }
+        }
+    }
+
+    /**
+     * Items of one folder, by descriptor node ID.
+     */
+    private static class ItemBatch {
+        final String folderName;
+        final List<Integer> nodes;
+
+        ItemBatch(String name, List<Integer> ids) {
+            folderName = name;
+            nodes = ids;
+        }
+    }
+
+    /**
+     * Convert a saved attachment; on the conversion pool if reading concurrently.
+     */
+    private void convertAttachment(File attPath) throws IOException, ConfigException {
+        ExecutorService pool = conversions;
+        if (pool == null) {
+            converter.convert(attPath);
+            return;
+        }
+        pool.execute(() -> {
+            try {
+                converter.convert(attPath);
+            } catch (Exception err) {
+                log.error("Unable to convert attachment FILE=" + attPath, err);
+            }
+        });
     }
 
     /**
@@ -494,7 +667,7 @@ public class OutlookPSTCrawler implements Collector {
         }
 
         // Create a folder to contain all the message content.
-        File msgFolder = createFolder(dateFolder, msgSubj, msg.getInternetMessageId());
+        File msgFolder = createFolder(dateFolder, msgSubj, msg.getInternetMessageId(), msg.getDescriptorNodeId());
 
         // Get a list of attachments.
         List<String> attFiles = processAttachments(msg, msgFolder);
@@ -591,14 +764,17 @@ public class OutlookPSTCrawler implements Collector {
      * TODO:  given we want the folder structure to be intuitive and readable, the file names may not reflect uniqueness
      * where subject lines for email may be repetitive.  By contrast, message IDs are not duplicative.  The length of file names
      * from using both message ID and subject line is an issue.  This routine attempts to get a relatively unique path using both.
+     * The PST node ID of the message is added, e.g., Subject_ab12_2097188, as subject and message ID may repeat; it is
+     * unique within the PST and the same on every run, however the PST is read.
      *
      * @param container output container relative path
      * @param msgSubj   message subject
      * @param msgId     message ID
+     * @param nodeId    PST descriptor node ID of the message
      * @return absolute path to file that will contain all related info for a given message.
      * @throws IOException err
      */
-    protected File createFolder(File container, String msgSubj, String msgId) throws IOException {
+    protected File createFolder(File container, String msgSubj, String msgId, long nodeId) throws IOException {
 
         if (msgId == null) {
             throw new IOException("RFC Error - MessageId is null.");
@@ -621,7 +797,7 @@ public class OutlookPSTCrawler implements Collector {
         int l = msgId.length();
         String uniqueness = msgId.substring(0, 2) + msgId.substring(l - 3, l - 1);
 
-        File msgFolder = new File(String.format("%s/%s_%s", container, msgName, uniqueness));
+        File msgFolder = new File(String.format("%s/%s_%s_%d", container, msgName, uniqueness, nodeId));
         if (!msgFolder.exists()) {
             FileUtility.makeDirectory(msgFolder);
         }
@@ -667,7 +843,7 @@ public class OutlookPSTCrawler implements Collector {
                 }
 
                 if (converter != null) {
-                    converter.convert(attPath);
+                    convertAttachment(attPath);
                 }
             }
         }
@@ -256,10 +256,9 @@ public class DefaultSharepointCrawl extends SharepointClient implements Exclusio
             doc = converter.convert(item);
 
             if (doc != null) {
-                doc.setDefaultID();
                 doc.addSourceURL(link.getAbsoluteURL(), link.getReferrer());
-                // This path must already exist
-                doc.saveBuffer(new File(doc.textpath));
+                // This path must already exist.  Default ID is the text digest, taken as the text is saved.
+                doc.saveBuffer(new File(doc.textpath), true);
 
                 if (listener != null) {
                     listener.collected(doc, item.getAbsolutePath());
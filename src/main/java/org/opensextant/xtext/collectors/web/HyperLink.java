@@ -29,12 +29,11 @@ import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
-import org.apache.tika.config.TikaConfig;
 import org.apache.tika.mime.MimeType;
 import org.apache.tika.mime.MimeTypeException;
-import org.apache.tika.mime.MimeTypes;
 import org.opensextant.util.FileUtility;
 import org.opensextant.util.TextUtils;
+import org.opensextant.xtext.converters.TikaRuntime;
 
 /**
  * A representation of a harvested hyperlink. Normalization of found URL attempts to derive:
@@ -304,9 +303,6 @@ public class HyperLink {
 
     }
 
-    /** The default mime. */
-    private static MimeTypes defaultMIME = TikaConfig.getDefaultConfig().getMimeRepository();
-
     /**
      * Set the MIME type of a found link, i.e., once you'ved downloaded the content you then know the ContentType
      * possibly.
@@ -332,7 +328,7 @@ public class HyperLink {
             /* Isolate the MIME type without parameters.
              * 
              */
-            mt = defaultMIME.forName(t.split(";", 2)[0]);
+            mt = TikaRuntime.getInstance().getMimeTypes().forName(t.split(";", 2)[0]);
             if (mt != null) {
                 fixPathExtension(mt.getExtension());
             }
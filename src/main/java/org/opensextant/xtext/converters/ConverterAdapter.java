@@ -16,6 +16,7 @@
 package org.opensextant.xtext.converters;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.tika.exception.WriteLimitReachedException;
 import org.apache.tika.io.TikaInputStream;
 import org.opensextant.xtext.ConvertedDocument;
 import org.opensextant.xtext.Converter;
@@ -23,7 +24,14 @@ import org.opensextant.xtext.Converter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Class ConverterAdapter.
@@ -32,6 +40,51 @@ import java.nio.charset.StandardCharsets;
  */
 public abstract class ConverterAdapter implements Converter {
 
+    /**
+     * If true, a document that reaches the text size limit is returned with the text found so far
+     * and marked as "truncated", rather than failing.
+     */
+    protected boolean truncateText = true;
+
+    /**
+     * Keep partial text when the text size limit is reached, or fail conversion. Default: keep partial text.
+     *
+     * @param b true to truncate, false to fail
+     */
+    public void setTruncateText(boolean b) {
+        truncateText = b;
+    }
+
+    /**
+     * Test if a parsing error is only the text size limit being reached.
+     *
+     * @param err error raised by parser or content handler
+     * @return true if truncation is enabled and err is due to the write limit.
+     */
+    protected boolean isTruncated(Throwable err) {
+        return truncateText && WriteLimitReachedException.isWriteLimitReached(err);
+    }
+
+    /**
+     * Fixed pool of daemon threads named name-1, name-2, etc.  Idle threads exit after a minute, so a pool
+     * left unused holds no threads; converters that own one still shut it down in close().
+     *
+     * @param name    thread name prefix
+     * @param threads pool size
+     * @return new pool
+     */
+    static ExecutorService newWorkerPool(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     /**
      * Conversion implementation.
      *
@@ -42,6 +95,22 @@ public abstract class ConverterAdapter implements Converter {
      */
     protected abstract ConvertedDocument conversionImplementation(InputStream in, File doc) throws IOException;
 
+    /**
+     * Conversion implementation for character input.  By default the text is encoded as UTF-8 and
+     * handed to the stream implementation; converters with a native character path override this.
+     *
+     * @param in  the text
+     * @param doc the doc, if any
+     * @return the converted document
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    protected ConvertedDocument conversionImplementation(Reader in, File doc) throws IOException {
+        String data = IOUtils.toString(in);
+        try (InputStream istream = IOUtils.toInputStream(data, StandardCharsets.UTF_8)) {
+            return conversionImplementation(TikaInputStream.get(istream), doc);
+        }
+    }
+
     /**
      * Not an iConvert interface, yet.
      * This would take great care in all implementations to ensure the converters do not rely on
@@ -57,8 +126,21 @@ public abstract class ConverterAdapter implements Converter {
     }
 
     /**
-     * Yield a ConvertedDocument with no File metadata. Underlying
-     * implementation opens and closes a stream to read the string. Metadata is
+     * Convert from a stream that was opened from the given file. Caller is responsible for closing stream.
+     *
+     * @param input stream
+     * @param doc   raw file
+     * @return the converted document
+     * @throws IOException on err
+     */
+    @Override
+    public ConvertedDocument convert(InputStream input, java.io.File doc) throws IOException {
+        return conversionImplementation(input, doc);
+    }
+
+    /**
+     * Yield a ConvertedDocument with no File metadata. The string is passed
+     * to the character implementation as is. Metadata is
      * derived solely from the text provided, e.g., length, conversion time,
      * encoding.  Defaults to UTF-8 charset
      *
@@ -68,9 +150,19 @@ public abstract class ConverterAdapter implements Converter {
      */
     @Override
     public ConvertedDocument convert(String data) throws IOException {
-        try (InputStream istream = IOUtils.toInputStream(data, StandardCharsets.UTF_8)) {
-            return conversionImplementation(TikaInputStream.get(istream), null);
-        }
+        return conversionImplementation(new StringReader(data), null);
+    }
+
+    /**
+     * Convert character data with no File metadata. Caller is responsible for closing reader.
+     *
+     * @param data text
+     * @return the converted document
+     * @throws IOException on err
+     */
+    @Override
+    public ConvertedDocument convert(Reader data) throws IOException {
+        return conversionImplementation(data, null);
     }
 
     /**
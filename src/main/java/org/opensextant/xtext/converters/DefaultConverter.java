@@ -20,20 +20,18 @@ package org.opensextant.xtext.converters;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.apache.tika.detect.DefaultDetector;
-import org.apache.tika.detect.Detector;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
-import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
 import org.opensextant.util.FileUtility;
 import org.opensextant.util.TextUtils;
 import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.TextChunkListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 /**
@@ -49,14 +47,11 @@ public class DefaultConverter extends ConverterAdapter {
 
     /* 1 MB of text from a given document */
     public final static int MAX_TEXT_SIZE = 0x100000;
-    private final Detector detector = new DefaultDetector();
-    private final Parser parser = new AutoDetectParser(detector);
-    private final ParseContext ctx = new ParseContext();
 
-    private int maxBuffer = MAX_TEXT_SIZE;
+    protected int maxBuffer = MAX_TEXT_SIZE;
+    private TextChunkListener chunkListener = null;
 
     public DefaultConverter() {
-        ctx.set(Parser.class, parser);
     }
 
     public DefaultConverter(int sz) {
@@ -64,6 +59,17 @@ public class DefaultConverter extends ConverterAdapter {
         maxBuffer = sz;
     }
 
+    /**
+     * Incremental mode: page text is handed to the listener as Tika finishes each page, rather than
+     * collected into the ConvertedDocument.  The returned document carries metadata and a chunk count only,
+     * and is not marked converted, so it is not cached.  The text limit applies per page in this mode.
+     *
+     * @param listener chunk listener, or null to collect the full text as usual.
+     */
+    public void setChunkListener(TextChunkListener listener) {
+        chunkListener = listener;
+    }
+
     /**
      * Common implementation -- take an input stream and return a ConvertedDoc;
      *
@@ -76,25 +82,65 @@ public class DefaultConverter extends ConverterAdapter {
     @Override
     protected ConvertedDocument conversionImplementation(InputStream input, java.io.File doc)
             throws IOException {
+        // A context per parse: the parser sets objects on it, and one converter serves several threads.
+        return conversionImplementation(input, doc, TikaRuntime.getInstance().createContext());
+    }
+
+    /**
+     * Parse with the given context, e.g., one that handles embedded documents differently.
+     *
+     * @param input   stream for raw file
+     * @param doc     raw file
+     * @param context Tika parse context
+     * @return converted doc
+     * @throws IOException on parsing err or MAX_TEXT_SIZE is reached and truncation is disabled.
+     */
+    protected ConvertedDocument conversionImplementation(InputStream input, java.io.File doc, ParseContext context)
+            throws IOException {
         Metadata metadata = new Metadata();
-        BodyContentHandler handler = new BodyContentHandler(maxBuffer);
+        ConvertedDocument textdoc = new ConvertedDocument(doc);
+        TextChunkHandler chunker = null;
+        ContentHandler handler;
+        if (chunkListener != null) {
+            chunker = new TextChunkHandler(textdoc, chunkListener, maxBuffer);
+            handler = new BodyContentHandler(chunker);
+        } else {
+            handler = new BodyContentHandler(maxBuffer);
+        }
+        boolean truncated = false;
 
         try {
-            parser.parse(input, handler, metadata, ctx);
+            // Looked up per parse, so a change of parser profile applies to converters already created.
+            TikaRuntime.getInstance().getParser().parse(input, handler, metadata, context);
         } catch (NoClassDefFoundError classErr) {
             throw new IOException("Unable to parse content due to Tika misconfiguration", classErr);
         } catch (TikaException e1) {
-            throw new IOException("Tika: Unable to parse content", e1);
+            if (!isTruncated(e1)) {
+                throw new IOException("Tika: Unable to parse content", e1);
+            }
+            truncated = true;
         } catch (SAXException e2) {
-            throw new IOException("SAX: Unable to parse content", e2);
+            if (!isTruncated(e2)) {
+                throw new IOException("SAX: Unable to parse content", e2);
+            }
+            truncated = true;
+        }
+        if (truncated) {
+            // Parsing stopped at the text limit.  Keep what was found.
+            log.info("Text truncated at {} chars, FILE={}", maxBuffer, doc);
+            textdoc.addProperty("truncated", true);
         }
-        ConvertedDocument textdoc = new ConvertedDocument(doc);
 
         textdoc.addTitle(metadata.get(TikaCoreProperties.TITLE));
         textdoc.setEncoding(metadata.get(Metadata.CONTENT_ENCODING));
         textdoc.addCreateDate(metadata.getDate(TikaCoreProperties.CREATED));
         textdoc.addAuthor(metadata.get(TikaCoreProperties.CREATOR));
 
+        if (chunker != null) {
+            textdoc.addNumberProperty("chunks", chunker.getChunkCount());
+            return textdoc;
+        }
+
         String t = handler.toString();
         if (t != null) {
             if (textdoc.filename != null && FileUtility.isSpreadsheet(textdoc.filename)) {
@@ -16,19 +16,27 @@
  */
 package org.opensextant.xtext.converters;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tika.config.TikaConfig;
-import org.apache.tika.extractor.EmbeddedResourceHandler;
-import org.apache.tika.extractor.ParserContainerExtractor;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
@@ -36,13 +44,22 @@ import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MimeType;
 import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.EmbeddedContentHandler;
+import org.apache.tika.sax.ToTextContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.opensextant.util.TextUtils;
 import org.opensextant.xtext.Content;
 import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.TextChunkListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
-public class EmbeddedContentConverter extends DefaultConverter {
-    ParseContext context = new ParseContext();
+public class EmbeddedContentConverter extends DefaultConverter implements Closeable {
     Logger log = LoggerFactory.getLogger(getClass());
 
     private final static Set<String> supportedTypes = new HashSet<>();
@@ -65,6 +82,53 @@ public class EmbeddedContentConverter extends DefaultConverter {
         super(sz);
     }
 
+    private int threads = 1;
+    private ExecutorService pool = null;
+
+    /**
+     * Render embedded objects on a pool of threads, rather than one after another inside the parse of
+     * the parent.  Each object is parsed with its own handlers and parse context either way, and its text is
+     * put back in place in the body afterwards, so the converted text is the same for any thread count.
+     *
+     * @param n thread count; 1 (default) renders objects in line
+     */
+    public synchronized void setThreads(int n) {
+        threads = Math.max(1, n);
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (threads > 1 && pool == null) {
+            pool = newWorkerPool("xtext-embedded", threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the worker pool, if any.  The converter may still be used; a new pool is started as needed.
+     */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Not supported: the text of embedded objects is put in place once the parse is done, so the body
+     * cannot be handed out page by page.
+     */
+    @Override
+    public void setChunkListener(TextChunkListener listener) {
+        if (listener != null) {
+            throw new UnsupportedOperationException("Embedded content is not converted incrementally");
+        }
+    }
+
     /**
      * If file type is NOT supported, the ConvertedDocument from the DefaultConverter will be returned.
      * if the file type is supported, the ConvertedDocument from the default is used as the parent to
@@ -83,74 +147,91 @@ public class EmbeddedContentConverter extends DefaultConverter {
 
     /**
      * Convert Embedded documents in the supported types to a folder of the embedded items.
-     * Trivial embedded icons and other components will not be extracted
+     * Trivial embedded icons and other components will not be extracted.
+     * <p>
+     * The document is parsed once: embedded objects are captured as the parser comes across them, while
+     * the body text is collected as usual.  The text of each object is then put in the body where the
+     * object was found, and listed again under "Embedded Objects".
      *
+     * @throws IOException on err, or if the text limit is reached and truncation is disabled
      */
     @Override
     protected ConvertedDocument conversionImplementation(InputStream in, File doc)
             throws IOException {
-        ConvertedDocument compoundDoc = super.conversionImplementation(in, doc);
-
-        String ext = FilenameUtils.getExtension(doc.getName());
+        String ext = doc != null ? FilenameUtils.getExtension(doc.getName()) : null;
         if (!isSupported(ext)) {
             // We know we don't support textifying compound docs of this type.  DONE!
             //
-            return compoundDoc; // Not really compound by our standards here.
+            return super.conversionImplementation(in, doc); // Not really compound by our standards here.
         }
 
-        ParserContainerExtractor extractor = new ParserContainerExtractor();
-        EmbeddedObjectExtractor objExtractor = new EmbeddedObjectExtractor(compoundDoc, true);
-
-        try (TikaInputStream tikaStream = TikaInputStream.get(doc.toPath())) {
-            extractor.extract(tikaStream, extractor, objExtractor);
-            compoundDoc.is_converted = true;
-            if (compoundDoc.hasRawChildren()) {
-                // Create text buffer for this compound document here.
-                // If raw children should be post-processed by some other means, that is up to caller.
-                // This parent document at least contains a complete text representation of the content in the original doc.
-                StringBuilder completeText = new StringBuilder();
-
-                completeText.append(compoundDoc.getText());
-                completeText.append("\n==Embedded Objects==\n");
-                completeText.append(renderText(compoundDoc.getRawChildren()));
-
-                compoundDoc.setText(completeText.toString());
-                compoundDoc.is_converted = true;
-                return compoundDoc;
-            } else {
-                // Okay, the complicated Embedded doc approach did not yied anything.
-                // Try the simple approach.
-                return compoundDoc;
+        EmbeddedObjectExtractor objExtractor = new EmbeddedObjectExtractor(FilenameUtils.getBaseName(doc.getName()),
+                true, getPool(), 0);
+
+        ConvertedDocument compoundDoc;
+        List<Content> children = new ArrayList<>();
+        List<String> childText = new ArrayList<>();
+        try {
+            compoundDoc = super.conversionImplementation(in, doc, objExtractor.context);
+            objExtractor.collect(children, childText);
+        } catch (IOException | RuntimeException err) {
+            // Objects still waiting to render are of no use now.
+            objExtractor.cancel();
+            throw err;
+        }
+        compoundDoc.is_converted = true;
+        if (!children.isEmpty()) {
+            for (Content child : children) {
+                compoundDoc.addRawChild(child);
+            }
+            // Object text goes back where each object was found, same as Tika would have it in line.
+            String body = TextUtils.reduce_line_breaks(objExtractor.splice(compoundDoc.getText()));
+            if (body.length() > maxBuffer) {
+                if (!truncateText) {
+                    throw new IOException(String.format("Text exceeds %d chars", maxBuffer));
+                }
+                log.info("Text truncated at {} chars, FILE={}", maxBuffer, doc);
+                body = body.substring(0, maxBuffer);
+                compoundDoc.addProperty("truncated", true);
             }
-        } catch (Exception e) {
-            throw new IOException("Stream parsing problem", e);
+            // Create text buffer for this compound document here.
+            // If raw children should be post-processed by some other means, that is up to caller.
+            // This parent document at least contains a complete text representation of the content in the original doc.
+            StringBuilder completeText = new StringBuilder();
+
+            completeText.append(body);
+            completeText.append("\n==Embedded Objects==\n");
+            completeText.append(renderText(children, childText));
+
+            compoundDoc.setText(completeText.toString());
         }
+        // else, the complicated Embedded doc approach did not yield anything.
+        return compoundDoc;
     }
 
-    private final DefaultConverter conv = new DefaultConverter();
-
     /**
      *
      * @param childObjects children
+     * @param childText    text of each child, as found while parsing
      * @return text assembled from children
      */
-    private String renderText(List<Content> childObjects) {
+    private String renderText(List<Content> childObjects, List<String> childText) {
         StringBuilder buf = new StringBuilder();
-        for (Content c : childObjects) {
-
+        for (int i = 0; i < childObjects.size(); ++i) {
+            Content c = childObjects.get(i);
             buf.append(String.format("%n[Embedded: %s; %s]%n", c.id, c.tikaMediatype.toString()));
-            try (InputStream istream = TikaInputStream.get(c.content, c.tikaMetadata)){
-                ConvertedDocument text = conv.conversionImplementation(istream, null);
-                buf.append(text.getText());
-            } catch (IOException ioe) {
-                // Each individual item in the list of children may fail. They have their own identity.
-                buf.append("Unconvertable content");
-            }
+            String text = childText.get(i);
+            buf.append(text != null ? text : "Unconvertable content");
             buf.append("\n");
         }
         return buf.toString();
     }
 
+    /* Marks where the text of an embedded object goes, by index; private use characters, not found in text */
+    private final static char MARK_START = '\uE000';
+    private final static char MARK_END = '\uE001';
+    private final static Pattern MARKER = Pattern.compile(MARK_START + "(\\d*)(" + MARK_END + ")?");
+
     private final static Set<String> filterableMeta = new HashSet<>();
     static {
         filterableMeta.add("application/x-emf");
@@ -162,20 +243,141 @@ public class EmbeddedContentConverter extends DefaultConverter {
     }
 
     /**
-     * Embedded extractor here saves embedded objects to folder structure.
+     * Embedded extractor here captures embedded objects as raw children and parses each into a text
+     * buffer of its own, with its own extractor for any objects nested inside it.  The body gets a marker
+     * in place of the object text, in the layout of Tika's default embedded extractor; splice() replaces
+     * the markers with the text.  Trivial objects are not captured, and are parsed into the body directly.
+     * <p>
+     * Given a pool, each object is parsed by a task of its own rather than in line.  Results are put back
+     * in document order by collect() and splice().
+     * <p>
+     * This extractor takes the place of the one TikaRuntime sets on a parse context, so it applies the
+     * parser profile's rules for images and embedded depth itself.
      *
      * @author ubaldino
      *
      */
-    class EmbeddedObjectExtractor implements EmbeddedResourceHandler {
+    class EmbeddedObjectExtractor implements EmbeddedDocumentExtractor {
 
-        ConvertedDocument parent = null;
+        String parentName = null;
         int objectCount = 0;
         boolean filterOut = true;
-
-        EmbeddedObjectExtractor(ConvertedDocument par, boolean filterTrivia) throws IOException {
-            parent = par;
+        final ParseContext context;
+        final ExecutorService workers;
+        /* Depth of the objects this extractor receives, and of those being parsed in line now */
+        final int baseDepth;
+        int nesting = 0;
+        final List<Content> children = new ArrayList<>();
+        final List<Future<EmbeddedObjectExtractor>> rendered = new ArrayList<>();
+        /* Text of the object this extractor was created to render, if any */
+        String objectText = null;
+        boolean spliced = false;
+
+        EmbeddedObjectExtractor(String parentBasename, boolean filterTrivia, ExecutorService pool, int depth) {
+            parentName = parentBasename;
             filterOut = filterTrivia;
+            workers = pool;
+            baseDepth = depth;
+            context = TikaRuntime.getInstance().createContext();
+            context.set(EmbeddedDocumentExtractor.class, this);
+        }
+
+        /**
+         * Gather children and their text in document order, waiting on any still rendering.
+         *
+         * @param allChildren output children, including nested ones
+         * @param allText     output text of each child; null if not convertable
+         */
+        void collect(List<Content> allChildren, List<String> allText) throws IOException {
+            for (int i = 0; i < children.size(); ++i) {
+                allChildren.add(children.get(i));
+                EmbeddedObjectExtractor object = result(i);
+                if (object == null) {
+                    allText.add(null);
+                    continue;
+                }
+                allText.add(object.getText());
+                object.collect(allChildren, allText);
+            }
+        }
+
+        /**
+         * @return extractor that rendered child i, or null if the child could not be parsed
+         */
+        private EmbeddedObjectExtractor result(int i) throws IOException {
+            try {
+                return rendered.get(i).get();
+            } catch (ExecutionException err) {
+                log.debug("Embedded object not parsed {}", children.get(i).id, err.getCause());
+                return null;
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", err);
+            }
+        }
+
+        /**
+         * @return text of the rendered object, with the text of objects inside it in place
+         */
+        String getText() throws IOException {
+            if (!spliced) {
+                objectText = splice(objectText);
+                spliced = true;
+            }
+            return objectText;
+        }
+
+        /**
+         * Replace the markers left in text by parseEmbedded() with the text of each object.  A marker cut short
+         * by the text limit is dropped.
+         *
+         * @param text text with markers
+         * @return text with objects in place
+         */
+        String splice(String text) throws IOException {
+            if (text == null || text.indexOf(MARK_START) < 0) {
+                return text;
+            }
+            Matcher m = MARKER.matcher(text);
+            StringBuilder buf = new StringBuilder();
+            while (m.find()) {
+                String objText = "";
+                if (m.group(2) != null) {
+                    EmbeddedObjectExtractor object = result(Integer.parseInt(m.group(1)));
+                    if (object != null) {
+                        objText = object.getText();
+                    }
+                }
+                m.appendReplacement(buf, Matcher.quoteReplacement(objText));
+            }
+            m.appendTail(buf);
+            return buf.toString();
+        }
+
+        /**
+         * Cancel objects not yet rendered.
+         */
+        void cancel() {
+            for (Future<EmbeddedObjectExtractor> task : rendered) {
+                task.cancel(true);
+            }
+        }
+
+        /**
+         * Parse one object. Objects nested inside are rendered in line by a new extractor.
+         */
+        private EmbeddedObjectExtractor render(Content child, byte[] data, Metadata metadata, int depth)
+                throws IOException, SAXException, TikaException {
+            EmbeddedObjectExtractor nested = new EmbeddedObjectExtractor(FilenameUtils.getBaseName(child.id),
+                    filterOut, null, depth);
+            StringWriter text = new StringWriter();
+            ContentHandler handler = new BodyContentHandler(
+                    new WriteOutContentHandler(new ToTextContentHandler(text), maxBuffer, false, nested.context));
+            try (TikaInputStream tis = TikaInputStream.get(data, metadata)) {
+                TikaRuntime.getInstance().getParser().parse(tis, handler, metadata, nested.context);
+            }
+            nested.objectText = text.toString();
+            return nested;
         }
 
         /**
@@ -196,22 +398,91 @@ public class EmbeddedContentConverter extends DefaultConverter {
             return false;
         }
 
+        @Override
+        public boolean shouldParseEmbedded(Metadata metadata) {
+            return TikaRuntime.getInstance().acceptEmbedded(metadata, baseDepth + nesting);
+        }
+
         /**
-         * EmbeddedResourceHandler interface;  listen for objects and handle them as needed.
+         * EmbeddedDocumentExtractor interface;  capture object and render it, on a worker if there is a pool,
+         * leaving a marker for its text in the parent handler.
          */
         @Override
-        public void handle(String filename, MediaType mediaType, InputStream stream) {
+        public void parseEmbedded(InputStream stream, ContentHandler handler, Metadata metadata, boolean outputHtml)
+                throws SAXException, IOException {
+            byte[] data = IOUtils.toByteArray(stream);
+            TikaRuntime tika = TikaRuntime.getInstance();
+            MediaType mediaType;
+            try (TikaInputStream tis = TikaInputStream.get(data)) {
+                mediaType = tika.getDetector().detect(tis, metadata);
+            }
+
+            String name = metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY);
+            Content child = createChild(name, mediaType, data);
+
+            // Same layout of the parent body as Tika's default embedded document extractor.
+            if (outputHtml) {
+                AttributesImpl attrs = new AttributesImpl();
+                attrs.addAttribute("", "class", "class", "CDATA", "package-entry");
+                handler.startElement(XHTMLContentHandler.XHTML, "div", "div", attrs);
+                if (StringUtils.isNotEmpty(name)) {
+                    handler.startElement(XHTMLContentHandler.XHTML, "h1", "h1", new AttributesImpl());
+                    handler.characters(name.toCharArray(), 0, name.length());
+                    handler.endElement(XHTMLContentHandler.XHTML, "h1", "h1");
+                }
+            }
+            if (child != null) {
+                Metadata md = new Metadata();
+                if (name != null) {
+                    md.set(TikaCoreProperties.RESOURCE_NAME_KEY, name);
+                }
+                md.set(Metadata.CONTENT_TYPE, mediaType.toString());
+                int depth = baseDepth + nesting + 1;
+                Future<EmbeddedObjectExtractor> task;
+                if (workers != null) {
+                    task = workers.submit(() -> render(child, data, md, depth));
+                } else {
+                    FutureTask<EmbeddedObjectExtractor> inline = new FutureTask<>(() -> render(child, data, md, depth));
+                    inline.run();
+                    task = inline;
+                }
+                char[] marker = String.format("%c%d%c", MARK_START, children.size(), MARK_END).toCharArray();
+                children.add(child);
+                rendered.add(task);
+                handler.characters(marker, 0, marker.length);
+            } else {
+                ++nesting;
+                try (TikaInputStream tis = TikaInputStream.get(data, metadata)) {
+                    tika.getParser().parse(tis, new EmbeddedContentHandler(new BodyContentHandler(handler)),
+                            metadata, context);
+                } catch (TikaException err) {
+                    log.debug("Embedded object not parsed {}", mediaType, err);
+                } finally {
+                    --nesting;
+                }
+            }
+            if (outputHtml) {
+                handler.endElement(XHTMLContentHandler.XHTML, "div", "div");
+            }
+        }
+
+        /**
+         * Name and describe an embedded object.
+         *
+         * @return child, or null if object is trivial or empty
+         */
+        private Content createChild(String filename, MediaType mediaType, byte[] data) {
             Metadata md = new Metadata();
             ++objectCount;
             String ext = "dat";
 
             if (filterOutTrivialObjects(mediaType.toString())) {
                 log.debug("Filtering out object " + mediaType);
-                return;
+                return null;
             }
             MimeType mimeType = null;
             try {
-                mimeType = TikaConfig.getDefaultConfig().getMimeRepository()
+                mimeType = TikaRuntime.getInstance().getMimeTypes()
                         .getRegisteredMimeType(mediaType.toString());
                 ext = mimeType.getExtension();
 
@@ -228,10 +499,10 @@ public class EmbeddedContentConverter extends DefaultConverter {
 
             boolean has_fname = true;
             if (filename == null) {
-                filename = String.format("%s,Part%d.%s", parent.basename, objectCount, ext);
+                filename = String.format("%s,Part%d.%s", parentName, objectCount, ext);
                 has_fname = false;
             } else if (filename.length() < 3) {
-                filename = String.format("%s,Part_%s_%d.%s", parent.basename, filename,
+                filename = String.format("%s,Part_%s_%d.%s", parentName, filename,
                         objectCount, ext);
             }
 
@@ -252,16 +523,9 @@ public class EmbeddedContentConverter extends DefaultConverter {
             // NOTE: this is redundant here; as we just created tika Metadata() object ourselves.
             child.tikaMetadata = md;
             child.tikaMediatype = mediaType;
+            child.content = data;
 
-            try {
-                child.content = IOUtils.toByteArray(stream);
-            } catch (IOException e1) {
-                log.error("Embedded object IO error", e1);
-            }
-
-            if (child.content.length > 0) {
-                parent.addRawChild(child);
-            }
+            return data.length > 0 ? child : null;
         }
     }
 }
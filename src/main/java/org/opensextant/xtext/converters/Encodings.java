@@ -0,0 +1,162 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fast checks for pure ASCII and well-formed UTF-8 data.  Bytes are tested 8 at a time, so runs of
+ * ASCII cost about one comparison per word.  Use these before any statistical charset detection,
+ * which is only needed when data is neither.
+ */
+public final class Encodings {
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private Encodings() {
+    }
+
+    /**
+     * @param data bytes
+     * @return true if all bytes are 7-bit ASCII
+     */
+    public static boolean isASCII(byte[] data) {
+        return isASCII(data, 0, data.length);
+    }
+
+    /**
+     * @param data bytes
+     * @param off  offset
+     * @param len  number of bytes to check
+     * @return true if all bytes in range are 7-bit ASCII
+     */
+    public static boolean isASCII(byte[] data, int off, int len) {
+        return asciiPrefix(data, off, off + len) == off + len;
+    }
+
+    /**
+     * @param text chars
+     * @param off  offset
+     * @param len  number of chars to check
+     * @return true if all chars in range are 7-bit ASCII
+     */
+    public static boolean isASCII(char[] text, int off, int len) {
+        int bits = 0;
+        for (int i = off; i < off + len; ++i) {
+            bits |= text[i];
+        }
+        return bits < 0x80;
+    }
+
+    /**
+     * @param text string
+     * @return true if all chars are 7-bit ASCII. No need to encode the text to bytes for this.
+     */
+    public static boolean isASCII(CharSequence text) {
+        int bits = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            bits |= text.charAt(i);
+        }
+        return bits < 0x80;
+    }
+
+    /**
+     * @param data bytes
+     * @return true if data is well-formed UTF-8. Pure ASCII data is also UTF-8.
+     */
+    public static boolean isUTF8(byte[] data) {
+        return isUTF8(data, 0, data.length, false);
+    }
+
+    /**
+     * Validate UTF-8 per RFC 3629: no overlong forms, no surrogates, nothing above U+10FFFF.
+     *
+     * @param data    bytes
+     * @param off     offset
+     * @param len     number of bytes to check
+     * @param partial true if range was cut from the middle of a larger stream, e.g., a sample; a character
+     *                split at either end of the range is then accepted.
+     * @return true if range is well-formed UTF-8
+     */
+    public static boolean isUTF8(byte[] data, int off, int len, boolean partial) {
+        int end = off + len;
+        int i = off;
+        if (partial) {
+            // Skip continuation bytes of a character that began before the range.
+            for (int k = 0; k < 3 && i < end && (data[i] & 0xC0) == 0x80; ++k) {
+                ++i;
+            }
+        }
+        while (i < end) {
+            i = asciiPrefix(data, i, end);
+            if (i == end) {
+                break;
+            }
+            int b = data[i] & 0xFF;
+            int need;
+            if (b >= 0xC2 && b <= 0xDF) {
+                need = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                need = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                need = 3;
+            } else {
+                // Stray continuation byte, overlong lead byte C0/C1, or F5..FF
+                return false;
+            }
+            int avail = Math.min(need, end - i - 1);
+            if (avail < need && !partial) {
+                return false;
+            }
+            if (avail > 0) {
+                int b1 = data[i + 1] & 0xFF;
+                if ((b == 0xE0 && b1 < 0xA0) || (b == 0xED && b1 > 0x9F)
+                        || (b == 0xF0 && b1 < 0x90) || (b == 0xF4 && b1 > 0x8F)) {
+                    return false;
+                }
+            }
+            for (int k = 1; k <= avail; ++k) {
+                if ((data[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += need + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @return index of first non-ASCII byte in range, or end.
+     */
+    private static int asciiPrefix(byte[] data, int i, int end) {
+        for (; i + 8 <= end; i += 8) {
+            if (((long) LONG.get(data, i) & HIGH_BITS) != 0) {
+                break;
+            }
+        }
+        for (; i < end; ++i) {
+            if (data[i] < 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
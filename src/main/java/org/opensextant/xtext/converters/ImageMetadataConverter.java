@@ -20,46 +20,44 @@ package org.opensextant.xtext.converters;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tika.detect.DefaultDetector;
-import org.apache.tika.detect.Detector;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
-import org.apache.tika.parser.AutoDetectParser;
-import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.image.ImageMetadataExtractor;
 import org.apache.tika.sax.BodyContentHandler;
 import org.opensextant.data.LatLon;
 import org.opensextant.util.GeodeticUtility;
 import org.opensextant.xtext.ConvertedDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
 /**
  * Parse mainly JPEG images or any others that have significant metadata headers
  * headers are tabulated and put into doc conversion as the text buffer (possibly not desirable).
  * And of course if there are loc/time info in the image, such things are pulled out.
+ * <p>
+ * For JPEG files in minimal text mode only the APP1 EXIF and XMP segments are read from the file
+ * and handed to Tika's own metadata extractors; the image data is never read. Anything else goes
+ * through the full Tika parser.
  *
  * @author ubaldino
  *
  */
 public class ImageMetadataConverter extends ConverterAdapter {
-    private final Detector detector = new DefaultDetector();
-    private final Parser parser = new AutoDetectParser(detector);
-    private final ParseContext ctx = new ParseContext();
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private boolean emitMinimalText = true;
 
     public final static String[] usefulFields = {"geo", "gps", "creation", "date", "model"};
 
     public ImageMetadataConverter() {
-        ctx.set(Parser.class, parser);
     }
 
     /**
@@ -89,6 +87,89 @@ public class ImageMetadataConverter extends ConverterAdapter {
         return false;
     }
 
+    private static final byte[] EXIF_ID = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XMP_ID = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int JPEG_SOI = 0xFFD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walk the JPEG segment headers up to the start of scan, seeking past everything but APP1.
+     * The EXIF and XMP payloads are parsed with the same Tika extractors the JPEG parser uses.
+     *
+     * @param doc file
+     * @return metadata, or null if the file is not a well-formed JPEG header
+     */
+    private Metadata readJpegHeaders(File doc) {
+        byte[] exif = null;
+        byte[] xmp = null;
+        try (RandomAccessFile raf = new RandomAccessFile(doc, "r")) {
+            long fileLen = raf.length();
+            if (fileLen < 4 || raf.readUnsignedShort() != JPEG_SOI) {
+                return null;
+            }
+            while (raf.getFilePointer() + 4 <= fileLen) {
+                if (raf.readUnsignedByte() != 0xFF) {
+                    return null;
+                }
+                int marker = raf.readUnsignedByte();
+                while (marker == 0xFF) {
+                    marker = raf.readUnsignedByte();
+                }
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    break;
+                }
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                    // Stand-alone markers carry no length.
+                    continue;
+                }
+                int segLen = raf.readUnsignedShort() - 2;
+                long next = raf.getFilePointer() + segLen;
+                if (segLen < 0 || next > fileLen) {
+                    return null;
+                }
+                if (marker == MARKER_APP1) {
+                    byte[] seg = new byte[segLen];
+                    raf.readFully(seg);
+                    if (exif == null && startsWith(seg, EXIF_ID)) {
+                        exif = seg;
+                    } else if (xmp == null && startsWith(seg, XMP_ID)) {
+                        xmp = Arrays.copyOfRange(seg, XMP_ID.length, seg.length);
+                    }
+                }
+                raf.seek(next);
+            }
+
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.CONTENT_TYPE, "image/jpeg");
+            ImageMetadataExtractor extractor = new ImageMetadataExtractor(metadata);
+            if (exif != null) {
+                extractor.parseRawExif(exif);
+            }
+            if (xmp != null) {
+                extractor.parseRawXMP(xmp);
+            }
+            return metadata;
+        } catch (IOException | SAXException | TikaException | RuntimeException err) {
+            logger.debug("JPEG header scan failed for {}, using Tika", doc, err);
+            return null;
+        }
+    }
+
     /**
      * Could pull in geodesy to do an Angle(lat,lon).toString() ...
      * @param yx  LatLon object 
@@ -120,9 +201,7 @@ public class ImageMetadataConverter extends ConverterAdapter {
         imgDoc.setEncoding(ConvertedDocument.OUTPUT_ENCODING);
         imgDoc.is_plaintext = false;
 
-        Metadata metadata = new Metadata();
         StringBuilder buf = new StringBuilder();
-        BodyContentHandler handler = new BodyContentHandler();
 
         //
         String type = "Image";
@@ -136,7 +215,15 @@ public class ImageMetadataConverter extends ConverterAdapter {
         }
 
         try {
-            parser.parse(in, handler, metadata, ctx);
+            Metadata metadata = null;
+            if (emitMinimalText && "Photo".equals(type)) {
+                metadata = readJpegHeaders(doc);
+            }
+            if (metadata == null) {
+                metadata = new Metadata();
+                TikaRuntime tika = TikaRuntime.getInstance();
+                tika.getParser().parse(in, new BodyContentHandler(), metadata, tika.createContext());
+            }
 
             if (objName == null) {
                 objName = metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY);
@@ -153,8 +240,8 @@ public class ImageMetadataConverter extends ConverterAdapter {
 
             buf.append("Image Specifications\n===================\n");
 
-            List<String> metaKeys = Arrays.asList(metadata.names());
-            Collections.sort(metaKeys);
+            String[] metaKeys = metadata.names();
+            Arrays.sort(metaKeys);
 
             for (String key : metaKeys) {
                 if (this.emitMinimalText && !isUseful(key)) {
@@ -164,7 +251,7 @@ public class ImageMetadataConverter extends ConverterAdapter {
                 if (StringUtils.isBlank(val)) {
                     val = "(N/A)";
                 }
-                buf.append(String.format("%s:\t%s\n", key, val));
+                buf.append(key).append(":\t").append(val).append('\n');
             }
 
             // Title
@@ -21,6 +21,7 @@ import javax.mail.*;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeUtility;
+import javax.mail.util.SharedFileInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,7 +37,6 @@ import org.opensextant.util.FileUtility;
 import org.opensextant.util.TextUtils;
 import org.opensextant.xtext.Content;
 import org.opensextant.xtext.ConvertedDocument;
-import org.opensextant.xtext.Converter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -76,8 +76,65 @@ public class MessageConverter extends ConverterAdapter {
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
     private final Session noSession = Session.getDefaultInstance(new Properties());
-    private int attachmentNumber = 0;
-    private Converter payloadConverter = new TikaHTMLConverter(false);
+    /* Stateless between calls, so one instance serves concurrent messages. */
+    private final TikaHTMLConverter payloadConverter = new TikaHTMLConverter(false);
+
+    /**
+     * State for the conversion of a single message. Keeping it out of the converter
+     * lets one converter instance handle messages concurrently.
+     */
+    protected static class MessageContext {
+        /** the message being converted; attachments are added to it as raw children. */
+        public final ConvertedDocument parent;
+        /** text of message body */
+        public final StringBuilder buf;
+        public final String msgPrefixId;
+        /** count of parts visited, used to name parts that have no file name */
+        public int attachmentNumber = 0;
+
+        public MessageContext(ConvertedDocument parent, StringBuilder buf, String msgPrefixId) {
+            this.parent = parent;
+            this.buf = buf;
+            this.msgPrefixId = msgPrefixId;
+        }
+    }
+
+    /**
+     * Subclasses that need more per-message state can provide their own context.
+     *
+     * @param parent      the message document
+     * @param buf         text buffer for message body
+     * @param msgPrefixId msgId prefix
+     * @return new context for one message
+     */
+    protected MessageContext createContext(ConvertedDocument parent, StringBuilder buf, String msgPrefixId) {
+        return new MessageContext(parent, buf, msgPrefixId);
+    }
+
+    /**
+     * @param ctx context of a message that has been parsed
+     * @return final text of the message
+     */
+    protected String getMessageText(MessageContext ctx) {
+        return ctx.buf.toString();
+    }
+
+    /**
+     * A binary part of the message, e.g., an attachment or inline image. By default the part is read
+     * and kept as a raw child of the message.  Subclasses may use the stream as it is, or skip it unread.
+     *
+     * @param ctx        context of the message
+     * @param filename   file name of part, or one made up for it
+     * @param partStream decoded content of the part
+     * @param meta       part metadata
+     * @throws IOException on err
+     */
+    protected void handleBinaryPart(MessageContext ctx, String filename, InputStream partStream, PartMetadata meta)
+            throws IOException {
+        Content child = createChildContent(filename, partStream, meta);
+        copyMailAttrs(ctx.parent, child);
+        ctx.parent.addRawChild(child);
+    }
 
     /**
      * @param in  stream
@@ -87,7 +144,16 @@ public class MessageConverter extends ConverterAdapter {
     @Override
     protected ConvertedDocument conversionImplementation(InputStream in, File doc)
             throws IOException {
-        attachmentNumber = 0;
+        if (doc != null && doc.isFile()) {
+            // Parts are read from the file as needed, rather than the whole message held in memory.
+            // doc may only name an entry still inside an archive; then the stream is parsed.
+            try (SharedFileInputStream fileInput = new SharedFileInputStream(doc)) {
+                MimeMessage msg = new MimeMessage(noSession, fileInput);
+                return convertMimeMessage(msg, doc);
+            } catch (MessagingException err) {
+                throw new IOException("Unable to parse content", err);
+            }
+        }
         try {
             // Connect to the message file
             MimeMessage msg = new MimeMessage(noSession, in);
@@ -118,15 +184,15 @@ public class MessageConverter extends ConverterAdapter {
 
         setMailAttributes(parentMsgDoc, msg);
 
-        StringBuilder rawText = new StringBuilder();
         // Since content is taken from file system, use file name
         String messageFilePrefix = (doc != null ? FilenameUtils.getBaseName(doc.getName())
                 : parentMsgDoc.id);
 
         // Find all attachments and plain text.
-        parseMessage(msg, parentMsgDoc, rawText, messageFilePrefix);
+        MessageContext ctx = createContext(parentMsgDoc, new StringBuilder(), messageFilePrefix);
+        parseMessage(msg, ctx);
 
-        parentMsgDoc.setText(rawText.toString());
+        parentMsgDoc.setText(getMessageText(ctx));
         parentMsgDoc.is_converted = true;
 
         return parentMsgDoc;
@@ -248,7 +314,7 @@ public class MessageConverter extends ConverterAdapter {
     /**
      * This is a recursive parser that pulls off attachments into Child content or
      * saves plain text as main message text.
-     * Calendar invites are ignored.
+     * Calendar invites are ignored.  Parts are numbered from 1 on each call.
      *
      * @param bodyPart    individual sub-part to append to buffer
      * @param parent      parent doc
@@ -258,8 +324,22 @@ public class MessageConverter extends ConverterAdapter {
      */
     public void parseMessage(Part bodyPart, ConvertedDocument parent, StringBuilder buf,
                              String msgPrefixId) throws IOException {
+        parseMessage(bodyPart, createContext(parent, buf, msgPrefixId));
+    }
+
+    /**
+     * Recursive part of parseMessage; all state for the message is carried in ctx.
+     *
+     * @param bodyPart individual sub-part to append to buffer
+     * @param ctx      state of the message conversion
+     * @throws IOException on error
+     */
+    protected void parseMessage(Part bodyPart, MessageContext ctx) throws IOException {
 
-        ++attachmentNumber;
+        int attachmentNumber = ++ctx.attachmentNumber;
+        ConvertedDocument parent = ctx.parent;
+        StringBuilder buf = ctx.buf;
+        String msgPrefixId = ctx.msgPrefixId;
 
         try {
 
@@ -318,7 +398,7 @@ public class MessageConverter extends ConverterAdapter {
                     // This step does not actually save any content, it calls
                     // itself to continue to break down the parts into the
                     // finest grained elements, at which point
-                    parseMessage(mp.getBodyPart(i), parent, buf, msgPrefixId);
+                    parseMessage(mp.getBodyPart(i), ctx);
                 }
 
                 // Exit point
@@ -327,7 +407,7 @@ public class MessageConverter extends ConverterAdapter {
             } else if (bodyPart.isMimeType("message/rfc822")) {
 
                 /* normal mail message body */
-                parseMessage((Part) bodyPart.getContent(), parent, buf, msgPrefixId);
+                parseMessage((Part) bodyPart.getContent(), ctx);
                 // Exit point
                 return;
             } else {
@@ -396,9 +476,7 @@ public class MessageConverter extends ConverterAdapter {
                 } else if (part instanceof InputStream) {
                     // Retrieve byte stream.
                     try (InputStream partStream = (InputStream) part) {
-                        Content child = createChildContent(filename, partStream, meta);
-                        copyMailAttrs(parent, child);
-                        parent.addRawChild(child);
+                        handleBinaryPart(ctx, filename, partStream, meta);
                     }
 
                     // Exit point.
@@ -33,7 +33,7 @@ public class OfficeConverter extends ConverterAdapter {
     protected ConvertedDocument conversionImplementation(InputStream input, java.io.File doc)
             throws IOException {
         Metadata metadata = new Metadata();
-        ParseContext ctx = new ParseContext();
+        ParseContext ctx = TikaRuntime.getInstance().createContext();
         BodyContentHandler handler = new BodyContentHandler();
 
         try {
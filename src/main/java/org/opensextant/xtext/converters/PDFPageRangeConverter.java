@@ -0,0 +1,294 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.opensextant.util.TextUtils;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.TextChunkListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * PDF conversion that splits a large document into page ranges and extracts the ranges concurrently.
+ * Each task loads the PDF on its own, copies its pages into a new document with PDFBox and parses that
+ * with Tika, so page text is the same as the default conversion.  Range text is joined in page order and
+ * the document outline (bookmarks) is appended once, as Tika does.  Attachments and XMP metadata of the
+ * original are not seen in this mode.
+ * <p>
+ * Small files, files with few pages, encrypted files, streams and incremental (chunked) conversion use
+ * the default conversion.
+ */
+public class PDFPageRangeConverter extends DefaultConverter implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private int threads = 1;
+    private long minFileSize = 0x1000000;
+    private int minPages = 200;
+    private int pagesPerRange = 0;
+    private boolean chunked = false;
+    private ExecutorService pool = null;
+
+    public PDFPageRangeConverter() {
+        super();
+    }
+
+    public PDFPageRangeConverter(int sz) {
+        super(sz);
+    }
+
+    /**
+     * @param n thread count; 1 (default) always uses the default conversion
+     */
+    public synchronized void setThreads(int n) {
+        threads = Math.max(1, n);
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = newWorkerPool("xtext-pdf", threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the worker pool, if any.  The converter may still be used; a new pool is started as needed.
+     */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * @param bytes files smaller than this use the default conversion; default is 16 MB
+     */
+    public void setMinFileSize(long bytes) {
+        minFileSize = bytes;
+    }
+
+    /**
+     * @param n documents with fewer pages use the default conversion; default is 200
+     */
+    public void setMinPages(int n) {
+        minPages = n;
+    }
+
+    /**
+     * Each task loads and copies the PDF, so fewer, larger ranges cost less overall; smaller ranges balance
+     * better across threads when page complexity varies.
+     *
+     * @param n pages extracted by one task; 0 (default) divides the pages evenly among the threads
+     */
+    public void setPagesPerRange(int n) {
+        pagesPerRange = Math.max(0, n);
+    }
+
+    @Override
+    public void setChunkListener(TextChunkListener listener) {
+        super.setChunkListener(listener);
+        chunked = listener != null;
+    }
+
+    @Override
+    protected ConvertedDocument conversionImplementation(InputStream input, File doc) throws IOException {
+        if (doc == null || threads < 2 || chunked || doc.length() < minFileSize) {
+            return super.conversionImplementation(input, doc);
+        }
+
+        int pages;
+        String outline;
+        try (PDDocument pdf = Loader.loadPDF(doc)) {
+            if (pdf.isEncrypted()) {
+                return super.conversionImplementation(input, doc);
+            }
+            pages = pdf.getNumberOfPages();
+            if (pages < minPages) {
+                return super.conversionImplementation(input, doc);
+            }
+            outline = outlineText(pdf);
+        } catch (IOException loadErr) {
+            log.debug("PDFBox could not open FILE={}, using default conversion", doc, loadErr);
+            return super.conversionImplementation(input, doc);
+        }
+
+        long t1 = System.currentTimeMillis();
+        List<Future<RangeText>> ranges = new ArrayList<>();
+        ExecutorService workers = getPool();
+        int step = pagesPerRange > 0 ? pagesPerRange : (pages + threads - 1) / threads;
+        for (int first = 1; first <= pages; first += step) {
+            int last = Math.min(pages, first + step - 1);
+            int p1 = first;
+            ranges.add(workers.submit(() -> extractRange(doc, p1, last)));
+        }
+
+        ConvertedDocument textdoc = new ConvertedDocument(doc);
+        StringBuilder buf = new StringBuilder();
+        boolean truncated = false;
+        Metadata metadata = null;
+        try {
+            for (Future<RangeText> f : ranges) {
+                RangeText r = f.get();
+                if (metadata == null) {
+                    metadata = r.metadata;
+                }
+                buf.append(r.text);
+                if (r.truncated || buf.length() > maxBuffer) {
+                    truncated = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", err);
+        } catch (ExecutionException err) {
+            throw new IOException("Unable to parse page range", err.getCause());
+        } finally {
+            for (Future<RangeText> f : ranges) {
+                f.cancel(true);
+            }
+        }
+        buf.append(outline);
+
+        if (truncated || buf.length() > maxBuffer) {
+            if (!truncateText) {
+                throw new IOException(String.format("PDF text exceeds %d chars", maxBuffer));
+            }
+            log.info("Text truncated at {} chars, FILE={}", maxBuffer, doc);
+            buf.setLength(Math.min(buf.length(), maxBuffer));
+            textdoc.addProperty("truncated", true);
+        }
+        log.debug("{} pages in {} ranges, {} ms, FILE={}", pages, ranges.size(), System.currentTimeMillis() - t1, doc);
+
+        textdoc.addTitle(metadata.get(TikaCoreProperties.TITLE));
+        textdoc.addCreateDate(metadata.getDate(TikaCoreProperties.CREATED));
+        textdoc.addAuthor(metadata.get(TikaCoreProperties.CREATOR));
+        // REMOVE REPEATING BLANK LINES
+        textdoc.setText(TextUtils.reduce_line_breaks(buf.toString()));
+        textdoc.is_converted = true;
+        return textdoc;
+    }
+
+    private static class RangeText {
+        String text;
+        Metadata metadata = new Metadata();
+        boolean truncated = false;
+    }
+
+    /**
+     * Copy pages first..last into a new PDF and parse it.  PDDocument is not thread-safe, so each task
+     * loads its own.
+     */
+    private RangeText extractRange(File doc, int first, int last) throws IOException {
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        try (PDDocument pdf = Loader.loadPDF(doc)) {
+            Splitter splitter = new Splitter();
+            splitter.setStartPage(first);
+            splitter.setEndPage(last);
+            splitter.setSplitAtPage(last - first + 1);
+            try (PDDocument range = splitter.split(pdf).get(0)) {
+                range.save(part);
+            }
+        }
+
+        RangeText r = new RangeText();
+        BodyContentHandler handler = new BodyContentHandler(maxBuffer);
+        try (TikaInputStream in = TikaInputStream.get(part.toByteArray())) {
+            TikaRuntime tika = TikaRuntime.getInstance();
+            tika.getParser().parse(in, handler, r.metadata, tika.createContext());
+        } catch (TikaException | SAXException err) {
+            if (!isTruncated(err)) {
+                throw new IOException(String.format("Unable to parse pages %d-%d", first, last), err);
+            }
+            r.truncated = true;
+        }
+        r.text = handler.toString();
+        return r;
+    }
+
+    /**
+     * Bookmark titles, as Tika renders the outline after the pages.
+     */
+    private static String outlineText(PDDocument pdf) throws IOException {
+        PDOutlineNode outline = pdf.getDocumentCatalog().getDocumentOutline();
+        if (outline == null) {
+            return "";
+        }
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, new Metadata());
+        try {
+            xhtml.startDocument();
+            outlineText(outline, xhtml, new HashSet<>());
+            xhtml.endDocument();
+        } catch (SAXException err) {
+            throw new IOException("Unable to read outline", err);
+        }
+        return handler.toString();
+    }
+
+    private static void outlineText(PDOutlineNode node, XHTMLContentHandler xhtml, Set<COSDictionary> seen)
+            throws SAXException {
+        PDOutlineItem child = node.getFirstChild();
+        if (child == null) {
+            return;
+        }
+        xhtml.startElement("ul");
+        // Malformed outlines may loop.
+        while (child != null && seen.add(child.getCOSObject())) {
+            xhtml.startElement("li");
+            String title = child.getTitle();
+            xhtml.characters(title != null ? title : "");
+            xhtml.endElement("li");
+            outlineText(child, xhtml, seen);
+            child = child.getNextSibling();
+        }
+        xhtml.endElement("ul");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Which Tika parsers run and how much work they do, for every converter.  TikaRuntime builds its parser
+ * tree and parse contexts from the profile; the default profile leaves Tika as configured.
+ * <p>
+ * textOnly() is meant for bulk text extraction: no OCR, so the Tesseract parser is not even probed,
+ * and no parsing of images found inside PDF or Office documents.
+ */
+public final class ParserProfile {
+
+    public static final String OCR_PARSER = "org.apache.tika.parser.ocr.TesseractOCRParser";
+
+    private final Set<String> excludedParsers = new HashSet<>();
+    private boolean ocr = true;
+    private boolean inlineImages = true;
+    private long pdfMaxMemory = -1;
+    private int maxEmbeddedDepth = -1;
+
+    /**
+     * @return profile for text extraction only
+     */
+    public static ParserProfile textOnly() {
+        ParserProfile p = new ParserProfile();
+        p.enableOCR(false);
+        p.enableInlineImages(false);
+        return p;
+    }
+
+    /**
+     * Leave a parser out of the parser tree entirely, e.g., one for formats never converted.
+     *
+     * @param className Tika parser class name
+     */
+    public void excludeParser(String className) {
+        excludedParsers.add(className);
+    }
+
+    /**
+     * @return parser classes left out; with OCR disabled this includes the OCR parser.
+     */
+    public Set<String> getExcludedParsers() {
+        if (ocr) {
+            return Collections.unmodifiableSet(excludedParsers);
+        }
+        Set<String> all = new HashSet<>(excludedParsers);
+        all.add(OCR_PARSER);
+        return all;
+    }
+
+    /**
+     * OCR of scanned pages and images.  Default: as Tika is configured, which runs OCR if Tesseract is installed.
+     *
+     * @param b false to disable OCR
+     */
+    public void enableOCR(boolean b) {
+        ocr = b;
+    }
+
+    public boolean isOCR() {
+        return ocr;
+    }
+
+    /**
+     * Parse images embedded in documents, e.g., pictures in DOCX or PDF inline images.  Default: true.
+     *
+     * @param b false to skip embedded images
+     */
+    public void enableInlineImages(boolean b) {
+        inlineImages = b;
+    }
+
+    public boolean isInlineImages() {
+        return inlineImages;
+    }
+
+    /**
+     * Heap PDFBox may use for a single PDF before it spills to temp files.
+     *
+     * @param bytes max bytes; negative for the Tika default
+     */
+    public void setPDFMaxMemory(long bytes) {
+        pdfMaxMemory = bytes;
+    }
+
+    public long getPDFMaxMemory() {
+        return pdfMaxMemory;
+    }
+
+    /**
+     * How deep to follow documents embedded in documents.
+     *
+     * @param depth max depth, 1 for direct attachments only; negative for no limit
+     */
+    public void setMaxEmbeddedDepth(int depth) {
+        maxEmbeddedDepth = depth;
+    }
+
+    public int getMaxEmbeddedDepth() {
+        return maxEmbeddedDepth;
+    }
+
+    /**
+     * @return true if parse contexts need anything beyond the Tika defaults
+     */
+    boolean hasContextSettings() {
+        return !ocr || !inlineImages || pdfMaxMemory >= 0 || maxEmbeddedDepth >= 0;
+    }
+}
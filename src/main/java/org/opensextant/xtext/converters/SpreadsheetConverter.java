@@ -0,0 +1,245 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackageProperties;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.microsoft.TikaExcelDataFormatter;
+import org.apache.tika.utils.XMLReaderUtils;
+import org.opensextant.xtext.ConvertedDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Streaming conversion of Excel 2007+ workbooks (XLSX).  Each sheet's XML is read with POI's SAX sheet handler
+ * and a read-only shared strings table, and rows are written to the text as they are parsed; no workbook
+ * model or XHTML is built.  Cell text is formatted as Tika formats it, and the layout is the same as the
+ * default conversion: the sheet name on its own line, one line per row, each cell preceded by a tab.
+ * Cell comments, headers/footers and drawings are not extracted.
+ * <p>
+ * Row, cell and text budgets bound the work.  Once one is spent, parsing stops and the document is marked
+ * "truncated", or fails if truncation is disabled.
+ */
+public class SpreadsheetConverter extends ConverterAdapter {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private int maxBuffer = DefaultConverter.MAX_TEXT_SIZE;
+    private int maxRows = -1;
+    private long maxCells = -1;
+
+    /* Files that are not OOXML packages, e.g., mislabeled or encrypted. */
+    private final DefaultConverter fallback;
+
+    public SpreadsheetConverter() {
+        this(DefaultConverter.MAX_TEXT_SIZE);
+    }
+
+    public SpreadsheetConverter(int sz) {
+        maxBuffer = sz;
+        fallback = new DefaultConverter(sz);
+    }
+
+    @Override
+    public void setTruncateText(boolean b) {
+        super.setTruncateText(b);
+        fallback.setTruncateText(b);
+    }
+
+    /**
+     * @param n max rows read from a workbook, over all sheets; negative for no limit (default)
+     */
+    public void setMaxRows(int n) {
+        maxRows = n;
+    }
+
+    /**
+     * @param n max non-empty cells read from a workbook, over all sheets; negative for no limit (default)
+     */
+    public void setMaxCells(long n) {
+        maxCells = n;
+    }
+
+    @Override
+    protected ConvertedDocument conversionImplementation(InputStream input, File doc) throws IOException {
+        ConvertedDocument textdoc = new ConvertedDocument(doc);
+        SheetText sheetText = new SheetText();
+        String limit = null;
+
+        OPCPackage pkg;
+        try {
+            pkg = doc != null ? OPCPackage.open(doc, PackageAccess.READ) : OPCPackage.open(input);
+        } catch (NotOfficeXmlFileException notXlsx) {
+            if (doc == null) {
+                throw new IOException("Not an OOXML spreadsheet", notXlsx);
+            }
+            log.debug("Not an OOXML spreadsheet, using default conversion FILE={}", doc);
+            return fallback.convert(input, doc);
+        } catch (OpenXML4JException err) {
+            throw new IOException("Unable to open spreadsheet", err);
+        }
+
+        try {
+            PackageProperties props = pkg.getPackageProperties();
+            textdoc.addTitle(props.getTitleProperty().orElse(null));
+            textdoc.addCreateDate(props.getCreatedProperty().orElse(null));
+            textdoc.addAuthor(props.getCreatorProperty().orElse(null));
+
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            DataFormatter formatter = new TikaExcelDataFormatter(Locale.getDefault());
+            ParseContext ctx = TikaRuntime.getInstance().createContext();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    sheetText.startSheet(sheets.getSheetName());
+                    XMLReaderUtils.parseSAX(sheet,
+                            new XSSFSheetXMLHandler(styles, null, strings, sheetText, formatter, false), ctx);
+                    sheetText.finishSheet();
+                }
+            }
+        } catch (BudgetSpent spent) {
+            limit = spent.getMessage();
+        } catch (OpenXML4JException | SAXException | TikaException err) {
+            throw new IOException("Unable to parse spreadsheet", err);
+        } finally {
+            pkg.revert();
+        }
+
+        if (limit != null) {
+            if (!truncateText) {
+                throw new IOException(String.format("Spreadsheet exceeds %s limit", limit));
+            }
+            log.info("Spreadsheet truncated at {} limit, FILE={}", limit, doc);
+            textdoc.addProperty("truncated", true);
+        }
+
+        // REMOVE TRAILING BLANK LINES/ROWS
+        textdoc.setText(sheetText.buf.toString().trim());
+        textdoc.is_converted = true;
+        return textdoc;
+    }
+
+    /**
+     * Column index of a cell reference such as "AB12", without parsing the row.
+     *
+     * @param ref cell reference
+     * @return 0-based column
+     */
+    static int columnOf(String ref) {
+        int col = 0;
+        for (int i = 0; i < ref.length(); ++i) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return col - 1;
+    }
+
+    /**
+     * Thrown out of the SAX handler to stop parsing at a budget.
+     */
+    private static class BudgetSpent extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetSpent(String limit) {
+            super(limit, null, false, false);
+        }
+    }
+
+    /**
+     * Writes rows as they are parsed, in the same layout as the Tika XHTML text for a sheet.
+     */
+    private class SheetText implements SheetContentsHandler {
+        final StringBuilder buf = new StringBuilder();
+        int rows = 0;
+        long cells = 0;
+        int lastCol = -1;
+
+        void startSheet(String name) {
+            buf.append(name).append('\n');
+            checkText();
+        }
+
+        void finishSheet() {
+            buf.append("\n\n");
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (maxRows >= 0 && rows >= maxRows) {
+                throw new BudgetSpent("row");
+            }
+            ++rows;
+            lastCol = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            buf.append('\n');
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (maxCells >= 0 && cells >= maxCells) {
+                throw new BudgetSpent("cell");
+            }
+            ++cells;
+            int col = cellReference == null ? lastCol + 1 : columnOf(cellReference);
+            // Missing cells are left empty.
+            for (int i = lastCol + 1; i < col; ++i) {
+                buf.append('\t');
+            }
+            lastCol = col;
+            buf.append('\t');
+            if (formattedValue != null) {
+                buf.append(formattedValue);
+            }
+            checkText();
+        }
+
+        private void checkText() {
+            if (buf.length() > maxBuffer) {
+                buf.setLength(maxBuffer);
+                throw new BudgetSpent("text");
+            }
+        }
+    }
+}
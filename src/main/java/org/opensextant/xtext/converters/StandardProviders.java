@@ -0,0 +1,205 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.opensextant.xtext.Converter;
+import org.opensextant.xtext.ConverterProvider;
+import org.opensextant.xtext.ConverterSettings;
+
+/**
+ * Providers for the converters in this package.  Those bound to file types are registered in
+ * META-INF/services/org.opensextant.xtext.ConverterProvider; the order there breaks ties between
+ * providers that claim the same MIME type, e.g., mail before web archives for message/rfc822.
+ * Default and Embedded have no file types and are used by XText directly as fallbacks.
+ */
+public final class StandardProviders {
+
+    private StandardProviders() {
+    }
+
+    private abstract static class Base implements ConverterProvider {
+        private final Collection<String> fileTypes;
+        private final Collection<String> contentTypes;
+
+        Base(String[] fileTypes, String... contentTypes) {
+            this.fileTypes = Collections.unmodifiableList(Arrays.asList(fileTypes));
+            this.contentTypes = Collections.unmodifiableList(Arrays.asList(contentTypes));
+        }
+
+        @Override
+        public Collection<String> getFileTypes() {
+            return fileTypes;
+        }
+
+        @Override
+        public Collection<String> getContentTypes() {
+            return contentTypes;
+        }
+    }
+
+    /** Plain text, transcoded to UTF-8. */
+    public static class Text extends Base {
+        public Text() {
+            super(new String[]{"txt"}, "text/plain");
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            TextTranscodingConverter conv = new TextTranscodingConverter(settings.getMaxBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            return conv;
+        }
+    }
+
+    /** HTML and XHTML. */
+    public static class HTML extends Base {
+        public HTML() {
+            super(new String[]{"html", "htm", "xhtml"}, "text/html", "application/xhtml+xml");
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            TikaHTMLConverter conv = new TikaHTMLConverter(settings.isScrubHTML(), settings.getMaxHTMLBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            return conv;
+        }
+    }
+
+    /** Excel 2007+ workbooks, streamed. */
+    public static class Spreadsheet extends Base {
+        public Spreadsheet() {
+            super(new String[]{"xlsx"}, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        }
+
+        @Override
+        public boolean requiresFile() {
+            return true;
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            SpreadsheetConverter conv = new SpreadsheetConverter(settings.getMaxBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            conv.setMaxRows(settings.getMaxSpreadsheetRows());
+            conv.setMaxCells(settings.getMaxSpreadsheetCells());
+            return conv;
+        }
+    }
+
+    /** Large PDFs in page ranges, on several threads.  Registered by XText when enabled, not as a service. */
+    public static class PDF extends Base {
+        public PDF() {
+            super(new String[]{"pdf"}, "application/pdf");
+        }
+
+        @Override
+        public boolean requiresFile() {
+            return true;
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            PDFPageRangeConverter conv = new PDFPageRangeConverter(settings.getMaxBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            conv.setChunkListener(settings.getChunkListener());
+            conv.setThreads(settings.getPDFThreads());
+            conv.setMinFileSize(settings.getPDFMinFileSize());
+            return conv;
+        }
+    }
+
+    /** RFC822 and Outlook mail messages. */
+    public static class Mail extends Base {
+        public Mail() {
+            super(new String[]{"eml", "msg"}, "message/rfc822", "application/vnd.ms-outlook");
+        }
+
+        @Override
+        public boolean requiresFile() {
+            return true;
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            return new MessageConverter();
+        }
+    }
+
+    /** MHT web archives. */
+    public static class WebArchive extends Base {
+        public WebArchive() {
+            super(new String[]{"mht"}, "multipart/related", "message/rfc822");
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            return new WebArchiveConverter();
+        }
+    }
+
+    /** JPEG photo metadata. */
+    public static class Image extends Base {
+        public Image() {
+            super(new String[]{"jpeg", "jpg"}, "image/jpeg");
+        }
+
+        @Override
+        public boolean requiresFile() {
+            return true;
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            return new ImageMetadataConverter();
+        }
+    }
+
+    /** Any other type, through Tika. */
+    public static class Default extends Base {
+        public Default() {
+            super(new String[0]);
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            DefaultConverter conv = new DefaultConverter(settings.getMaxBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            conv.setChunkListener(settings.getChunkListener());
+            return conv;
+        }
+    }
+
+    /** Compound documents, when embedded objects are extracted. */
+    public static class Embedded extends Base {
+        public Embedded() {
+            super(new String[0]);
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            EmbeddedContentConverter conv = new EmbeddedContentConverter(settings.getMaxBuffer());
+            conv.setTruncateText(settings.isTruncateText());
+            conv.setThreads(settings.getEmbeddedThreads());
+            return conv;
+        }
+    }
+}
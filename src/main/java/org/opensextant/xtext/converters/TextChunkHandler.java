@@ -0,0 +1,114 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opensextant.util.TextUtils;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.TextChunkListener;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Content handler that collects text one page at a time and hands each page to a TextChunkListener
+ * as soon as Tika closes the page.  Tika marks pages as &lt;div class="page"&gt; for PDF and some other
+ * paged formats.  Text outside of page markers is emitted as a chunk of its own at the end of the document.
+ * Only one page of text is held in memory at any time.
+ * <p>
+ * Wrap this in a BodyContentHandler so only body text is seen.
+ */
+public class TextChunkHandler extends DefaultHandler {
+
+    private final TextChunkListener listener;
+    private final ConvertedDocument doc;
+    private final int maxChunkSize;
+    private final StringBuilder buf = new StringBuilder();
+    private int chunkCount = 0;
+    private int depth = 0;
+    private int pageDepth = -1;
+
+    /**
+     * @param doc          document being converted, passed on to listener
+     * @param listener     recipient of page text
+     * @param maxChunkSize max number of chars held for a single page; the remainder of the page is dropped.
+     */
+    public TextChunkHandler(ConvertedDocument doc, TextChunkListener listener, int maxChunkSize) {
+        this.doc = doc;
+        this.listener = listener;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    private static boolean isPage(String localName, Attributes atts) {
+        return "div".equals(localName) && "page".equals(atts.getValue("class"));
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        ++depth;
+        if (pageDepth < 0 && isPage(localName, atts)) {
+            // Anything that came before the page is emitted on its own.
+            emit();
+            pageDepth = depth;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (depth == pageDepth) {
+            emit();
+            pageDepth = -1;
+        }
+        --depth;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        int room = maxChunkSize - buf.length();
+        if (room > 0) {
+            buf.append(ch, start, Math.min(room, length));
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void endDocument() {
+        emit();
+    }
+
+    private void emit() {
+        if (StringUtils.isBlank(buf)) {
+            buf.setLength(0);
+            return;
+        }
+        ++chunkCount;
+        String text = TextUtils.reduce_line_breaks(buf.toString());
+        buf.setLength(0);
+        listener.handleChunk(doc, chunkCount, text);
+    }
+
+    /**
+     * @return number of chunks emitted so far
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+}
@@ -17,27 +17,54 @@
  */
 package org.opensextant.xtext.converters;
 
-import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 import com.ibm.icu.text.CharsetDetector;
 import com.ibm.icu.text.CharsetMatch;
-import org.apache.commons.io.IOUtils;
-import org.opensextant.util.TextUtils;
 import org.opensextant.xtext.ConvertedDocument;
 
 /**
  * Text converter that detects original encoding to include pure ASCII, Latin1, UTF-8 etc
  * Whereas Tika does not make a not of pure-ASCII texts.
+ * <p>
+ * Encoding is detected on a sample of the file -- head, middle and tail -- and the text is then
+ * decoded as it is read, up to the max text size.  Files of any size can be handled this way.
+ * If the sample is ASCII but the rest of the file is not, the encoding is detected again from the
+ * first non-ASCII byte on.
  *
  * @author Marc C. Ubaldino, MITRE, ubaldino at mitre dot org
  */
 public class TextTranscodingConverter extends ConverterAdapter {
 
-    private final static CharsetDetector chardet = new CharsetDetector();
     private final static int IGNORE_THRESHOLD_SIZE = 1024; // 1KB
     private final static int IGNORE_THRESHOLD_CONF = 65; // 0 to 100
+    /* Bytes read from each of head, middle and tail of a file for encoding detection */
+    private final static int SAMPLE_SIZE = 0x10000; // 64KB
+
+    private int maxBuffer = DefaultConverter.MAX_TEXT_SIZE;
+
+    public TextTranscodingConverter() {
+    }
+
+    /**
+     * @param sz max number of chars of text to keep
+     */
+    public TextTranscodingConverter(int sz) {
+        maxBuffer = sz;
+    }
 
     /**
      * A converter that tries to get a decent encoding ASCII, UTF-8 or other,
@@ -54,21 +81,56 @@ public class TextTranscodingConverter extends ConverterAdapter {
 
         ConvertedDocument textdoc = new ConvertedDocument(doc);
 
-        byte[] data = null;
-
-        // Get byte data from input stream or file
-        if (doc != null) {
-            try (FileInputStream docstream = new FileInputStream(doc)) {
-                data = IOUtils.toByteArray(docstream);
+        // Get byte data from file or input stream; a streamed item may have no file.
+        if (doc != null && doc.isFile()) {
+            try (RandomAccessFile raf = new RandomAccessFile(doc, "r")) {
+                long len = raf.length();
+                byte[] sample = sampleFile(raf, len);
+                raf.seek(0);
+                transcode(textdoc, sample, len, Channels.newInputStream(raf.getChannel()));
             }
         } else if (in != null) {
-            data = IOUtils.toByteArray(in);
+            BufferedInputStream input = new BufferedInputStream(in, SAMPLE_SIZE);
+            input.mark(SAMPLE_SIZE);
+            byte[] sample = input.readNBytes(SAMPLE_SIZE);
+            input.reset();
+            // Stream length is unknown; only a full sample says it is not short.
+            long len = sample.length < SAMPLE_SIZE ? sample.length : Long.MAX_VALUE;
+            transcode(textdoc, sample, len, input);
         }
 
-        if (data == null) {
-            return textdoc;
+        return textdoc;
+    }
+
+    /**
+     * Read head, middle and tail of a file; or the whole file if it is small.
+     */
+    private static byte[] sampleFile(RandomAccessFile raf, long len) throws IOException {
+        if (len <= 3 * SAMPLE_SIZE) {
+            byte[] data = new byte[(int) len];
+            raf.readFully(data);
+            return data;
         }
+        byte[] data = new byte[3 * SAMPLE_SIZE];
+        raf.readFully(data, 0, SAMPLE_SIZE);
+        raf.seek((len - SAMPLE_SIZE) / 2);
+        raf.readFully(data, SAMPLE_SIZE, SAMPLE_SIZE);
+        raf.seek(len - SAMPLE_SIZE);
+        raf.readFully(data, 2 * SAMPLE_SIZE, SAMPLE_SIZE);
+        return data;
+    }
 
+    /**
+     * Detect encoding from sample, then decode the stream into the document text.
+     *
+     * @param textdoc document to fill in
+     * @param sample  sample of raw data
+     * @param len     total length of raw data
+     * @param input   raw data, from the start
+     * @throws IOException on err, or if the text limit is reached and truncation is disabled
+     */
+    private void transcode(ConvertedDocument textdoc, byte[] sample, long len, InputStream input)
+            throws IOException {
         // Encoding heuristics here.....
         //
         // Objective:  mark small plain text payloads with unknown character set
@@ -79,27 +141,136 @@ public class TextTranscodingConverter extends ConverterAdapter {
         //
         textdoc.is_plaintext = true;
 
-        boolean is_ascii = TextUtils.isASCII(data);
+        Charset charset;
+        String encoding;
+        boolean is_ascii = Encodings.isASCII(sample);
         if (is_ascii) {
             textdoc.do_convert = false;
-            textdoc.setEncoding("ASCII");
-            textdoc.setText(new String(data));
+            charset = StandardCharsets.US_ASCII;
+            encoding = "ASCII";
+        } else if (isUTF8Sample(sample, len)) {
+            // Valid UTF-8 is proven; no need for statistical detection.
+            textdoc.do_convert = false;
+            charset = StandardCharsets.UTF_8;
+            encoding = charset.name();
         } else {
-            chardet.setText(data);
-            CharsetMatch cs = chardet.detect();
+            CharsetMatch cs = detect(sample);
             if (ConvertedDocument.OUTPUT_ENCODING.equalsIgnoreCase(cs.getName())) {
                 textdoc.do_convert = false;
-            } else if (data.length < IGNORE_THRESHOLD_SIZE && cs.getConfidence() < IGNORE_THRESHOLD_CONF) {
+            } else if (len < IGNORE_THRESHOLD_SIZE && cs.getConfidence() < IGNORE_THRESHOLD_CONF) {
                 textdoc.do_convert = false;
             }
-            textdoc.setEncoding(cs.getName());
-            textdoc.setText(new String(data, cs.getName()));
+            encoding = cs.getName();
+            charset = Charset.forName(encoding);
+        }
+
+        StringBuilder buf = new StringBuilder((int) Math.min(len, maxBuffer));
+        boolean truncated = false;
+        if (is_ascii) {
+            // ASCII is copied as is, until the text limit or a byte that is not ASCII.
+            byte[] chunk = new byte[0x2000];
+            int n;
+            while ((n = input.read(chunk)) > 0) {
+                int end = n;
+                if (!Encodings.isASCII(chunk, 0, n)) {
+                    end = 0;
+                    while (chunk[end] >= 0) {
+                        ++end;
+                    }
+                }
+                int room = maxBuffer - buf.length();
+                if (end > room) {
+                    end = room;
+                    truncated = true;
+                }
+                buf.append(new String(chunk, 0, end, StandardCharsets.US_ASCII));
+                if (truncated) {
+                    break;
+                }
+                if (end < n) {
+                    // Not ASCII after all, past the sample.  Detect the encoding of the rest from here.
+                    byte[] more = input.readNBytes(SAMPLE_SIZE);
+                    byte[] region = new byte[n - end + more.length];
+                    System.arraycopy(chunk, end, region, 0, n - end);
+                    System.arraycopy(more, 0, region, n - end, more.length);
+                    if (Encodings.isUTF8(region, 0, region.length, true)) {
+                        charset = StandardCharsets.UTF_8;
+                    } else {
+                        charset = Charset.forName(detect(region).getName());
+                        textdoc.do_convert = true;
+                    }
+                    encoding = charset.name();
+                    truncated = decode(new SequenceInputStream(new ByteArrayInputStream(region), input), charset,
+                            buf);
+                    break;
+                }
+            }
+        } else {
+            truncated = decode(input, charset, buf);
+        }
+
+        if (truncated) {
+            if (!truncateText) {
+                throw new IOException(String.format("Text size limit %d reached", maxBuffer));
+            }
+            textdoc.addProperty("truncated", true);
         }
+        textdoc.setEncoding(encoding);
+        textdoc.setText(buf.toString());
         if (textdoc.do_convert) {
             textdoc.is_converted = true;
         }
+    }
 
-        return textdoc;
+    /**
+     * Decode input into buf, up to the text limit.  Bytes not valid in the charset are replaced.
+     *
+     * @return true if the text limit was reached
+     */
+    private boolean decode(InputStream input, Charset charset, StringBuilder buf) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        char[] chunk = new char[0x2000];
+        Reader reader = new InputStreamReader(input, decoder);
+        int n;
+        while ((n = reader.read(chunk)) > 0) {
+            int room = maxBuffer - buf.length();
+            if (n > room) {
+                buf.append(chunk, 0, room);
+                return true;
+            }
+            buf.append(chunk, 0, n);
+        }
+        return false;
+    }
+
+    /**
+     * Validate UTF-8 on each piece of a sample separately, as a character may be cut at either end of a piece.
+     */
+    private static boolean isUTF8Sample(byte[] sample, long len) {
+        if (sample.length == len) {
+            return Encodings.isUTF8(sample);
+        }
+        if (sample.length < 3 * SAMPLE_SIZE) {
+            // Head of a stream
+            return Encodings.isUTF8(sample, 0, sample.length, true);
+        }
+        for (int off = 0; off < sample.length; off += SAMPLE_SIZE) {
+            if (!Encodings.isUTF8(sample, off, SAMPLE_SIZE, true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ICU CharsetDetector is not thread-safe, so use one per detection.
+     */
+    private static CharsetMatch detect(byte[] data) {
+        CharsetDetector chardet = new CharsetDetector();
+        chardet.setText(data);
+        return chardet.detect();
     }
 
     /**
@@ -113,15 +284,18 @@ public class TextTranscodingConverter extends ConverterAdapter {
      * @throws UnsupportedEncodingException on err
      */
     public static void setTextAndEncoding(ConvertedDocument doc, byte[] data) throws UnsupportedEncodingException {
-        boolean is_ascii = TextUtils.isASCII(data);
-        if (is_ascii) {
+        if (Encodings.isASCII(data)) {
             doc.setEncoding("ASCII");
-            doc.setText(new String(data));
+            doc.setText(new String(data, StandardCharsets.US_ASCII));
+            return;
+        }
+        if (Encodings.isUTF8(data)) {
+            doc.setEncoding("UTF-8");
+            doc.setText(new String(data, StandardCharsets.UTF_8));
             return;
         }
 
-        chardet.setText(data);
-        CharsetMatch cs = chardet.detect();
+        CharsetMatch cs = detect(data);
 
         doc.setEncoding(cs.getName());
         doc.setText(new String(data, cs.getName()));
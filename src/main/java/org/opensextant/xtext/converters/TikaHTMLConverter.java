@@ -20,11 +20,11 @@ package org.opensextant.xtext.converters;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-import net.htmlparser.jericho.StartTag;
+import org.apache.commons.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.ParseContext;
@@ -113,6 +113,23 @@ public class TikaHTMLConverter extends ConverterAdapter {
      */
     @Override
     protected ConvertedDocument conversionImplementation(InputStream input, File doc) throws IOException {
+        return convertHTML(input, null, doc);
+    }
+
+    /**
+     * HTML already in memory as characters is parsed as is -- no encoding to bytes and detecting the charset again.
+     */
+    @Override
+    protected ConvertedDocument conversionImplementation(Reader input, File doc) throws IOException {
+        return convertHTML(null, IOUtils.toString(input), doc);
+    }
+
+    /**
+     * @param input raw HTML stream, or null if html is given
+     * @param html  HTML text, or null if input is given
+     * @param doc   original file, if any
+     */
+    private ConvertedDocument convertHTML(InputStream input, String html, File doc) throws IOException {
         Metadata metadata = new Metadata();
         HashMap<String, String> moreMetadata = new HashMap<>();
 
@@ -125,17 +142,30 @@ public class TikaHTMLConverter extends ConverterAdapter {
             scrubbingHandler = new BoilerpipeContentHandler(handler);
         }
 
+        boolean truncated = false;
         try {
-            parser.parse(input, (scrubHTMLArticle ? scrubbingHandler : handler), metadata, new ParseContext());
-            if (doc != null) {
-                parseHTMLMetadata(doc, moreMetadata);
+            ContentHandler h = scrubHTMLArticle ? scrubbingHandler : handler;
+            // Text of the page itself; embedded resources are not parsed.
+            ParseContext ctx = TikaRuntime.getInstance().createDocumentContext();
+            if (html != null) {
+                parser.parseString(html, h, metadata, ctx);
+            } else {
+                parser.parse(input, h, metadata, ctx);
             }
         } catch (Exception xerr) {
-            throw new IOException("Unable to parse content", xerr);
+            if (!isTruncated(xerr)) {
+                throw new IOException("Unable to parse content", xerr);
+            }
+            truncated = true;
         }
+        harvestHTMLMetadata(metadata, moreMetadata);
 
         ConvertedDocument textdoc = new ConvertedDocument(doc);
         textdoc.is_converted = true;
+        if (truncated) {
+            log.info("HTML text truncated at {} chars, FILE={}", maxHTMLDocumentSize, doc);
+            textdoc.addProperty("truncated", true);
+        }
         textdoc.addTitle(metadata.get(TikaCoreProperties.TITLE));
 
         String text = null;
@@ -149,9 +179,11 @@ public class TikaHTMLConverter extends ConverterAdapter {
         textdoc.setText(TextUtils.reduce_line_breaks(text));
 
         // Improve CHAR SET encoding answer.
-        byte[] data = textdoc.buffer.getBytes();
-        if (TextUtils.isASCII(data)) {
+        if (Encodings.isASCII(textdoc.buffer)) {
             textdoc.setEncoding("ASCII");
+        } else if (html != null) {
+            // Characters were given, not bytes; they are UTF-8 on output.
+            textdoc.setEncoding(ConvertedDocument.OUTPUT_ENCODING);
         } else {
             // Okay, okay... let Tika name whatever encoding it found or guessed
             // at.
@@ -176,34 +208,29 @@ public class TikaHTMLConverter extends ConverterAdapter {
      * Heuristics for pulling in metadata that Tika neglects for various reasons.
      * This adds found meta tags to given metadata.
      * <p>
-     * TODO: InputStream is difficult to reset after tika parser reads it. So just using the file object,
-     * Jericho reads the raw file again.
+     * Tika's HTML parser already records each meta tag (name, property or http-equiv) in its metadata
+     * while parsing, so that is used rather than parsing the raw HTML a second time.  Keys Tika derives on
+     * its own, e.g., dc:title or X-TIKA:*, are skipped.
      *
-     * @param doc file object for document
-     * @param md  metadata map to backfill
-     * @throws IOException from Jericho HTML API if HTML parsing fails
+     * @param metadata Tika metadata from parsing the document
+     * @param md       metadata map to backfill
      */
-    private void parseHTMLMetadata(File doc, Map<String, String> md) throws IOException {
-        net.htmlparser.jericho.Source htmlDoc = new net.htmlparser.jericho.Source(doc);
-        List<net.htmlparser.jericho.StartTag> tags = htmlDoc.getAllStartTags("meta");
-        for (StartTag t : tags) {
-            String n = t.getAttributeValue("name");
-            String p = t.getAttributeValue("property");
-
-            if (p == null && n == null) {
-                log.debug("Unmatched metadata in HTML {}", t);
+    private static void harvestHTMLMetadata(Metadata metadata, Map<String, String> md) {
+        for (String key : metadata.names()) {
+            if (isTikaMeta(key) || !isUsefulMeta(key)) {
                 continue;
             }
-            String key = p != null ? p : n;
-            if (!isUsefulMeta(key)) {
-                continue;
-            }
-            /* hopefully value is in content field */
-            String v = t.getAttributeValue("content");
+            String v = metadata.get(key);
             if (v == null) {
                 continue;
             }
             md.put(key, v);
         }
     }
+
+    private static boolean isTikaMeta(String key) {
+        String tag = key.toLowerCase();
+        return tag.startsWith("dc:") || tag.startsWith("dcterms:") || tag.startsWith("meta:")
+                || tag.startsWith("x-tika") || tag.startsWith("x-parsed-by") || tag.startsWith("content-");
+    }
 }
@@ -0,0 +1,308 @@
+/*
+ *
+ *      Copyright 2026 OpenSextant.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.opensextant.xtext.converters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.CompositeParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParserDecorator;
+import org.apache.tika.parser.ocr.TesseractOCRConfig;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * One shared Tika configuration, detector, MIME repository and parser tree for all converters.
+ * Tika service discovery is expensive, so it is done once here -- either eagerly by XText.setup()
+ * via initialize() or lazily on first use by any converter that is used outside of XText, or when
+ * XText preloading is disabled.
+ * <p>
+ * The detector, MIME repository and AutoDetectParser are thread-safe and are meant to be shared.
+ * ParseContext is not -- parsers set objects on it as they go -- so use createContext() for each parse.
+ * <p>
+ * A ParserProfile trims the parser tree and sets parser options on every context.  There is one profile per
+ * process; changing it reloads the parser tree.  Converters get the parser with getInstance().getParser() for
+ * each parse rather than keeping it.
+ */
+public final class TikaRuntime {
+
+    private static final Logger log = LoggerFactory.getLogger(TikaRuntime.class);
+    private static volatile TikaRuntime instance = null;
+    private static ParserProfile profile = new ParserProfile();
+
+    private final TikaConfig config;
+    private final Detector detector;
+    private final MimeTypes mimeTypes;
+    private final AutoDetectParser parser;
+    private final ParserProfile parserProfile;
+
+    private TikaRuntime(TikaConfig cfg, ParserProfile prof) {
+        config = cfg;
+        detector = cfg.getDetector();
+        mimeTypes = cfg.getMimeRepository();
+        parserProfile = prof;
+        Set<String> excluded = prof.getExcludedParsers();
+        if (excluded.isEmpty()) {
+            parser = new AutoDetectParser(cfg);
+        } else {
+            parser = new AutoDetectParser(detector, exclude(cfg.getParser(), excluded, cfg.getMediaTypeRegistry()));
+            parser.setAutoDetectParserConfig(cfg.getAutoDetectParserConfig());
+        }
+    }
+
+    /**
+     * Copy of a parser tree without the excluded parsers.
+     *
+     * @return parser, or null if it is excluded
+     */
+    private static Parser exclude(Parser p, Set<String> excluded, MediaTypeRegistry registry) {
+        if (p instanceof CompositeParser) {
+            List<Parser> kept = new ArrayList<>();
+            for (Parser child : ((CompositeParser) p).getAllComponentParsers()) {
+                Parser c = exclude(child, excluded, registry);
+                if (c != null) {
+                    kept.add(c);
+                }
+            }
+            return new CompositeParser(registry, kept);
+        }
+        Parser leaf = p instanceof ParserDecorator ? ((ParserDecorator) p).getWrappedParser() : p;
+        if (excluded.contains(leaf.getClass().getName())) {
+            log.debug("Parser excluded: {}", leaf.getClass().getName());
+            return null;
+        }
+        return p;
+    }
+
+    /**
+     * Set the parser profile for the whole process.  If Tika was already loaded with a different profile it
+     * is reloaded, and parses started afterwards use it; converters look up the parser for each parse.
+     *
+     * @param p profile
+     */
+    public static synchronized void setProfile(ParserProfile p) {
+        if (p == null || p == profile) {
+            return;
+        }
+        profile = p;
+        if (instance != null) {
+            log.info("Parser profile changed; Tika parsers will be reloaded");
+            instance = null;
+        }
+    }
+
+    /**
+     * Load the default Tika configuration and preload the parser tree, if not done already.
+     *
+     * @return the shared runtime
+     * @throws IOException if Tika is misconfigured
+     */
+    public static TikaRuntime initialize() throws IOException {
+        TikaRuntime rt = instance;
+        if (rt != null) {
+            return rt;
+        }
+        synchronized (TikaRuntime.class) {
+            if (instance == null) {
+                long t1 = System.currentTimeMillis();
+                try {
+                    instance = new TikaRuntime(new TikaConfig(), profile);
+                } catch (TikaException err) {
+                    throw new IOException("Unable to load Tika configuration", err);
+                }
+                instance.preload();
+                log.info("Tika parsers loaded in {} ms", System.currentTimeMillis() - t1);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Lazy accessor for converters.
+     *
+     * @return the shared runtime
+     */
+    public static TikaRuntime getInstance() {
+        TikaRuntime rt = instance;
+        if (rt != null) {
+            return rt;
+        }
+        try {
+            return initialize();
+        } catch (IOException err) {
+            throw new IllegalStateException("Tika could not be initialized", err);
+        }
+    }
+
+    /**
+     * Touch the parser tree so the supported type map of every parser is built now, rather than
+     * on the first document.
+     */
+    private void preload() {
+        ParseContext ctx = createContext();
+        int count = parser.getSupportedTypes(ctx).size();
+        log.debug("Tika supports {} media types", count);
+    }
+
+    public TikaConfig getConfig() {
+        return config;
+    }
+
+    public Detector getDetector() {
+        return detector;
+    }
+
+    public MimeTypes getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public AutoDetectParser getParser() {
+        return parser;
+    }
+
+    /**
+     * A new parse context that recurses into embedded objects with the shared parser.
+     *
+     * @return parse context
+     */
+    public ParseContext createContext() {
+        ParseContext ctx = new ParseContext();
+        ctx.set(Parser.class, parser);
+        if (parserProfile.hasContextSettings()) {
+            applyProfile(ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * A new parse context with the profile's parser options that, as a bare ParseContext, does not parse
+     * embedded objects.  For conversions that want only the text of the document itself, e.g., HTML.
+     *
+     * @return parse context
+     */
+    public ParseContext createDocumentContext() {
+        ParseContext ctx = new ParseContext();
+        if (parserProfile.hasContextSettings()) {
+            applyParserOptions(ctx);
+        }
+        return ctx;
+    }
+
+    private void applyProfile(ParseContext ctx) {
+        applyParserOptions(ctx);
+        if (!parserProfile.isInlineImages() || parserProfile.getMaxEmbeddedDepth() >= 0) {
+            ctx.set(EmbeddedDocumentExtractor.class, new ProfileEmbeddedExtractor(ctx));
+        }
+    }
+
+    private void applyParserOptions(ParseContext ctx) {
+        PDFParserConfig pdf = new PDFParserConfig();
+        if (!parserProfile.isOCR()) {
+            pdf.setOcrStrategy(PDFParserConfig.OCR_STRATEGY.NO_OCR);
+            TesseractOCRConfig ocr = new TesseractOCRConfig();
+            ocr.setSkipOcr(true);
+            ctx.set(TesseractOCRConfig.class, ocr);
+        }
+        if (!parserProfile.isInlineImages()) {
+            pdf.setExtractInlineImages(false);
+        }
+        if (parserProfile.getPDFMaxMemory() >= 0) {
+            pdf.setMaxMainMemoryBytes(parserProfile.getPDFMaxMemory());
+        }
+        ctx.set(PDFParserConfig.class, pdf);
+    }
+
+    /**
+     * The profile's rules for embedded documents: images are skipped if inline images are disabled, and
+     * nothing is parsed past the max embedded depth.  Extractors other than the one set by createContext()
+     * apply these themselves.
+     *
+     * @param md    metadata of the embedded document, before it is read
+     * @param depth embedded documents being parsed around this one; 0 for one in the top document
+     * @return true if the document should be parsed
+     */
+    public boolean acceptEmbedded(Metadata md, int depth) {
+        int maxDepth = parserProfile.getMaxEmbeddedDepth();
+        if (maxDepth >= 0 && depth >= maxDepth) {
+            return false;
+        }
+        if (!parserProfile.isInlineImages()) {
+            String type = md.get(Metadata.CONTENT_TYPE);
+            MediaType mt = type != null ? MediaType.parse(type) : null;
+            if (mt == null) {
+                try {
+                    // By name only, the content has not been read yet.
+                    mt = mimeTypes.detect(null, md);
+                } catch (IOException err) {
+                    mt = null;
+                }
+            }
+            if (mt != null && "image".equals(mt.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses embedded documents as Tika does, but skips images and stops at the max depth, as the profile says.
+     */
+    private class ProfileEmbeddedExtractor extends ParsingEmbeddedDocumentExtractor {
+        /* Converters may share a context across threads */
+        private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+        ProfileEmbeddedExtractor(ParseContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        public boolean shouldParseEmbedded(Metadata md) {
+            return acceptEmbedded(md, depth.get()[0]) && super.shouldParseEmbedded(md);
+        }
+
+        @Override
+        public void parseEmbedded(InputStream stream, ContentHandler handler, Metadata md, boolean outputHtml)
+                throws SAXException, IOException {
+            int[] d = depth.get();
+            ++d[0];
+            try {
+                super.parseEmbedded(stream, handler, md, outputHtml);
+            } finally {
+                --d[0];
+            }
+        }
+    }
+}
@@ -23,15 +23,33 @@ import java.io.InputStream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.io.TikaInputStream;
-import org.opensextant.xtext.Content;
 import org.opensextant.xtext.ConvertedDocument;
 
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
 public class WebArchiveConverter extends MessageConverter {
 
+    /* Converters hold no per-call state, so they are shared across calls. */
+    private final TikaHTMLConverter htmlParser = new TikaHTMLConverter(false /* no scrub */);
+    private final DefaultConverter objectParser = new DefaultConverter();
+
+    /**
+     * Text of web archive parts, gathered as the parts are found.
+     */
+    static class WebArchiveContext extends MessageContext {
+        final StringBuilder partText = new StringBuilder();
+
+        WebArchiveContext(ConvertedDocument parent, StringBuilder buf, String msgPrefixId) {
+            super(parent, buf, msgPrefixId);
+        }
+    }
+
     /**
      * Convert MHT or .webarchive file to pure text.
      * Alternatively, export "archive" exploded on disk and then convert all children items.
      * See MessageConverter base and ArchiveNavigator solutions for that.
+     * <p>
+     * Parts are converted as the MIME parser comes to them; nothing is kept as raw children.
      *
      * @param in stream
      * @param doc original file
@@ -39,53 +57,63 @@ public class WebArchiveConverter extends MessageConverter {
     @Override
     protected ConvertedDocument conversionImplementation(InputStream in, File doc)
             throws IOException {
-        TikaHTMLConverter htmlParser = new TikaHTMLConverter(false /* no scrub */);
-        DefaultConverter objectParser = new DefaultConverter();
-
         ConvertedDocument d = super.conversionImplementation(in, doc);
         d.is_webArchive = true;
+        return d;
+    }
 
-        if (!d.hasRawChildren()) {
-            return d;
-        }
+    @Override
+    protected MessageContext createContext(ConvertedDocument parent, StringBuilder buf, String msgPrefixId) {
+        return new WebArchiveContext(parent, buf, msgPrefixId);
+    }
 
-        StringBuilder buf = new StringBuilder();
-        for (Content binary : d.getRawChildren()) {
-            logger.info("{} {} {}", d.id, binary.id, binary.mimeType);
-            if (binary.mimeType == null) {
-                continue;
+    @Override
+    protected void handleBinaryPart(MessageContext ctx, String filename, InputStream partStream, PartMetadata meta)
+            throws IOException {
+        StringBuilder buf = ((WebArchiveContext) ctx).partText;
+        String mimeType = meta.mimeType;
+        logger.debug("{} {} {}", ctx.parent.id, filename, mimeType);
+        if (mimeType == null) {
+            return;
+        }
+        if ("application/octet-stream".equalsIgnoreCase(mimeType)) {
+            ConvertedDocument obj = objectParser.convert(TikaInputStream.get(partStream));
+            if (obj != null && obj.hasText() && !isWebScript(obj.getText())) {
+                buf.append(obj.getText());
+                buf.append("\n==================\n");
             }
-            if ("application/octet-stream".equalsIgnoreCase(binary.mimeType)) {
-                ConvertedDocument obj = objectParser.convert(TikaInputStream.get(binary.content));
-                if (obj != null && obj.hasText() && !isWebScript(obj.getText())) {
-                    buf.append(obj.getText());
-                    buf.append("\n==================\n");
-                }
-            } else if (binary.mimeType.startsWith("text/html")) {
-                ConvertedDocument htmlDoc = htmlParser.convert(TikaInputStream.get(binary.content));
-                if (htmlDoc != null && htmlDoc.hasText() && !isWebScript(htmlDoc.getText())) {
-                    // Filter out HTML crap -- comments, javascript, etc. that comes through as octet-stream in these archives.
-                    buf.append(htmlDoc.getText());
-                    buf.append("\n==================\n");
-                }
-            } else if (binary.mimeType.startsWith("image")) {
-                buf.append(String.format("\n[Image: %s type='%s']  ", binary.id, binary.mimeType));
+        } else if (mimeType.startsWith("text/html")) {
+            ConvertedDocument htmlDoc = htmlParser.convert(TikaInputStream.get(partStream));
+            if (htmlDoc != null && htmlDoc.hasText() && !isWebScript(htmlDoc.getText())) {
+                // Filter out HTML crap -- comments, javascript, etc. that comes through as octet-stream in these archives.
+                buf.append(htmlDoc.getText());
+                buf.append("\n==================\n");
             }
+        } else if (mimeType.startsWith("image")) {
+            // Image data is not read at all.
+            buf.append(String.format("\n[Image: %s type='%s']  ", filename, mimeType));
         }
+    }
 
-        if (d.hasText()) {
-            StringBuilder tmp = new StringBuilder();
-            tmp.append(d.getText());
-            tmp.append("\n\n==================\n\n");
-            tmp.append(buf);
-            d.setText(tmp.toString());
-        } else {
-            d.setText(buf.toString());
+    @Override
+    protected String getMessageText(MessageContext ctx) {
+        StringBuilder partText = ((WebArchiveContext) ctx).partText;
+        if (partText.length() == 0) {
+            return ctx.buf.toString();
         }
-
-        return d;
+        if (isBlank(ctx.buf)) {
+            return partText.toString();
+        }
+        StringBuilder tmp = new StringBuilder();
+        tmp.append(ctx.buf);
+        tmp.append("\n\n==================\n\n");
+        tmp.append(partText);
+        return tmp.toString();
     }
 
+    /* Only the start of the data is tested */
+    private static final int SCRIPT_TEST_LEN = 4000;
+
     /**
      *  JavaScript or any script detection.
      *
@@ -97,19 +125,28 @@ public class WebArchiveConverter extends MessageConverter {
             return true; /* not really */
         }
 
-        int sub = Math.min(4000, data.length());
-        String test = data.substring(0, sub - 1).toLowerCase().trim();
+        int len = Math.min(SCRIPT_TEST_LEN, data.length());
 
         // Typically the term 'script' does not actually appear in these octet-streams.
-        if (test.contains("javascript") || test.contains("document.write(") || test.contains("xmlhttp")){
+        if (contains(data, len, "javascript") || contains(data, len, "document.write(")
+                || contains(data, len, "xmlhttp")) {
             return true;
         }
         // Less obvious clues.  Must contain all:
-        if (test.contains("function") && test.contains("{") && test.contains("var ") && test.contains("=")) {
-            return true;
-        }
+        return contains(data, len, "function") && contains(data, len, "{") && contains(data, len, "var ")
+                && contains(data, len, "=");
+    }
 
+    /**
+     * Case-insensitive search for term within the first len chars of data, without copying data.
+     */
+    private static boolean contains(String data, int len, String term) {
+        int last = len - term.length();
+        for (int i = 0; i <= last; ++i) {
+            if (data.regionMatches(true, i, term, 0, term.length())) {
+                return true;
+            }
+        }
         return false;
     }
-
 }
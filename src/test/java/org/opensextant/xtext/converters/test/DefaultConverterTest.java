@@ -0,0 +1,104 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Test;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.converters.DefaultConverter;
+
+public class DefaultConverterTest {
+
+    private static File createPDF(int pages) throws Exception {
+        File f = File.createTempFile("xtext", ".pdf");
+        f.deleteOnExit();
+        try (PDDocument pdf = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pages; ++i) {
+                PDPage page = new PDPage();
+                pdf.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("This is page " + i + " of the test document");
+                    content.endText();
+                }
+            }
+            pdf.save(f);
+        }
+        return f;
+    }
+
+    @Test
+    public void testTruncation() throws Exception {
+        File f = createPDF(10);
+        ConvertedDocument whole = new DefaultConverter().convert(f);
+        assertFalse(whole.getJSONProperties().containsKey("truncated"));
+
+        // Partial text is kept and marked.
+        DefaultConverter conv = new DefaultConverter(100);
+        ConvertedDocument doc = conv.convert(f);
+        assertTrue(doc.getJSONProperties().getBoolean("truncated"));
+        assertTrue(doc.is_converted);
+        assertTrue(doc.getText().length() <= 100);
+        assertTrue(whole.getText().startsWith(doc.getText()));
+
+        // Or conversion fails.
+        conv.setTruncateText(false);
+        try {
+            conv.convert(f);
+            fail("Text limit reached without error");
+        } catch (IOException expected) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        File f = createPDF(5);
+        List<Integer> numbers = new ArrayList<>();
+        List<String> chunks = new ArrayList<>();
+        DefaultConverter conv = new DefaultConverter();
+        conv.setChunkListener((doc, chunk, text) -> {
+            numbers.add(chunk);
+            chunks.add(text);
+        });
+        ConvertedDocument doc = conv.convert(f);
+
+        // One chunk per page, in page order.
+        assertEquals(5, chunks.size());
+        for (int i = 1; i <= 5; ++i) {
+            assertEquals(i, numbers.get(i - 1).intValue());
+            assertEquals("This is page " + i + " of the test document", chunks.get(i - 1).trim());
+        }
+        assertEquals(5, doc.getNumberProperty("chunks"));
+        assertNull(doc.getText());
+        assertFalse(doc.is_converted);
+
+        // The text limit applies to each page.
+        chunks.clear();
+        numbers.clear();
+        conv = new DefaultConverter(12);
+        conv.setChunkListener((d, chunk, text) -> chunks.add(text));
+        conv.convert(f);
+        assertEquals(5, chunks.size());
+        for (String text : chunks) {
+            assertTrue(text.length() <= 12);
+            assertTrue(text.trim().startsWith("This is"));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Test;
+import org.opensextant.xtext.converters.EmbeddedContentConverter;
+
+public class EmbeddedContentConverterTest {
+
+    /**
+     * @param text        page text
+     * @param attachments attached files, name to content
+     * @return PDF
+     */
+    private static byte[] createPDF(String text, Map<String, byte[]> attachments) throws Exception {
+        try (PDDocument pdf = new PDDocument()) {
+            PDPage page = new PDPage();
+            pdf.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                content.beginText();
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                content.newLineAtOffset(72, 700);
+                content.showText(text);
+                content.endText();
+            }
+            Map<String, PDComplexFileSpecification> files = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> att : attachments.entrySet()) {
+                PDEmbeddedFile ef = new PDEmbeddedFile(pdf, new ByteArrayInputStream(att.getValue()));
+                ef.setSize(att.getValue().length);
+                PDComplexFileSpecification fs = new PDComplexFileSpecification();
+                fs.setFile(att.getKey());
+                fs.setEmbeddedFile(ef);
+                files.put(att.getKey(), fs);
+            }
+            PDEmbeddedFilesNameTreeNode tree = new PDEmbeddedFilesNameTreeNode();
+            tree.setNames(files);
+            PDDocumentNameDictionary names = new PDDocumentNameDictionary(pdf.getDocumentCatalog());
+            names.setEmbeddedFiles(tree);
+            pdf.getDocumentCatalog().setNames(names);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pdf.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static String convert(File f, int threads) throws Exception {
+        EmbeddedContentConverter conv = new EmbeddedContentConverter();
+        try {
+            conv.setThreads(threads);
+            return conv.convert(f).getText();
+        } finally {
+            conv.close();
+        }
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        Map<String, byte[]> inner = new LinkedHashMap<>();
+        inner.put("deep.txt", "Text of the deepest attachment".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, byte[]> attachments = new LinkedHashMap<>();
+        for (int i = 1; i <= 4; ++i) {
+            attachments.put("note" + i + ".txt", ("Text of attached note " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        attachments.put("inner.pdf", createPDF("Inner page text", inner));
+
+        File f = File.createTempFile("xtext", ".pdf");
+        f.deleteOnExit();
+        Files.write(f.toPath(), createPDF("Outer page text", attachments));
+
+        String serial = convert(f, 1);
+        int section = serial.indexOf("==Embedded Objects==");
+        assertTrue(section > 0);
+        // Object text is in the body, in order, as well as in the list of objects.
+        String body = serial.substring(0, section);
+        int first = body.indexOf("attached note 1");
+        assertTrue(first > 0 && first < body.indexOf("attached note 4"));
+        int nested = body.indexOf("Inner page text");
+        assertTrue(nested > 0 && nested < body.indexOf("deepest attachment"));
+        assertTrue(serial.indexOf("deepest attachment", section) > 0);
+
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(serial, convert(f, 3));
+        }
+    }
+}
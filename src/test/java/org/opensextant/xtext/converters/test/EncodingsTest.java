@@ -0,0 +1,38 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.opensextant.xtext.converters.Encodings;
+
+public class EncodingsTest {
+
+    @Test
+    public void testASCII() {
+        byte[] data = "Plain ASCII text, longer than one word.\n".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(Encodings.isASCII(data));
+        assertTrue(Encodings.isUTF8(data));
+        data[data.length - 3] = (byte) 0xE9;
+        assertFalse(Encodings.isASCII(data));
+        assertTrue(Encodings.isASCII("abc"));
+        assertFalse(Encodings.isASCII("café"));
+    }
+
+    @Test
+    public void testUTF8() {
+        byte[] data = "Café au lait, über alles — 😀 done.".getBytes(StandardCharsets.UTF_8);
+        assertTrue(Encodings.isUTF8(data));
+        // Latin-1 is not UTF-8
+        assertFalse(Encodings.isUTF8("Café au lait".getBytes(StandardCharsets.ISO_8859_1)));
+        // Overlong '/' and encoded surrogate
+        assertFalse(Encodings.isUTF8(new byte[] { (byte) 0xC0, (byte) 0xAF }));
+        assertFalse(Encodings.isUTF8(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }));
+        // Emoji cut at both ends is fine for a partial sample only
+        int emoji = "Café au lait, über alles — ".getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(Encodings.isUTF8(data, 4, emoji - 2, true));
+        assertFalse(Encodings.isUTF8(data, 4, emoji - 2, false));
+    }
+}
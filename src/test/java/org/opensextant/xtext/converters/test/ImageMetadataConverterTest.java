@@ -0,0 +1,25 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.converters.ImageMetadataConverter;
+
+public class ImageMetadataConverterTest {
+
+    @Test
+    public void testPhotoHeaders() throws Exception {
+        File f = new File(getClass().getResource("/multimedia-tests/android_photo_with_gps1.jpeg").toURI());
+        ConvertedDocument doc = new ImageMetadataConverter().convert(f);
+        assertNotNull(doc);
+        assertEquals("31.990345, -110.782345", doc.getProperty("location"));
+        assertEquals("Photo: android_photo_with_gps1.jpeg", doc.getProperty("title"));
+        assertNotNull(doc.create_date);
+        assertTrue(doc.getText().contains("Location:\t31.990345N 110.782345W"));
+    }
+}
@@ -0,0 +1,55 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.Test;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.converters.DefaultConverter;
+import org.opensextant.xtext.converters.PDFPageRangeConverter;
+
+public class PDFPageRangeConverterTest {
+
+    private static File createPDF(int pages) throws Exception {
+        File f = File.createTempFile("xtext", ".pdf");
+        f.deleteOnExit();
+        try (PDDocument pdf = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pages; ++i) {
+                PDPage page = new PDPage();
+                pdf.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("This is page " + i);
+                    content.endText();
+                }
+            }
+            pdf.save(f);
+        }
+        return f;
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        File f = createPDF(12);
+        PDFPageRangeConverter conv = new PDFPageRangeConverter();
+        conv.setThreads(3);
+        conv.setMinFileSize(0);
+        conv.setMinPages(1);
+        conv.setPagesPerRange(5);
+
+        ConvertedDocument ranged = conv.convert(f);
+        ConvertedDocument whole = new DefaultConverter().convert(f);
+        assertTrue(ranged.getText().indexOf("page 12") > ranged.getText().indexOf("page 11"));
+        assertEquals(whole.getText(), ranged.getText());
+    }
+}
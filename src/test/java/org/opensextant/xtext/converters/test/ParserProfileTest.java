@@ -0,0 +1,103 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tika.parser.CompositeParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParserDecorator;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.junit.Test;
+import org.opensextant.xtext.Content;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.XText;
+import org.opensextant.xtext.converters.DefaultConverter;
+import org.opensextant.xtext.converters.EmbeddedContentConverter;
+import org.opensextant.xtext.converters.ParserProfile;
+import org.opensextant.xtext.converters.TikaRuntime;
+
+public class ParserProfileTest {
+
+    private static final String HTML_PARSER = "org.apache.tika.parser.html.JSoupParser";
+
+    private static Set<String> parserNames(Parser p, Set<String> names) {
+        if (p instanceof CompositeParser) {
+            for (Parser child : ((CompositeParser) p).getAllComponentParsers()) {
+                parserNames(child, names);
+            }
+        } else {
+            Parser leaf = p instanceof ParserDecorator ? ((ParserDecorator) p).getWrappedParser() : p;
+            names.add(leaf.getClass().getName());
+        }
+        return names;
+    }
+
+    private int embeddedObjects() throws Exception {
+        File docx = new File(getClass().getResource("/multimedia-tests/doc_with_embedded_geocoded_image2.docx").toURI());
+        EmbeddedContentConverter conv = new EmbeddedContentConverter();
+        try {
+            ConvertedDocument doc = conv.convert(docx);
+            List<Content> children = doc.getRawChildren();
+            return children == null ? 0 : children.size();
+        } finally {
+            conv.close();
+        }
+    }
+
+    @Test
+    public void testTextOnly() throws Exception {
+        try {
+            ParserProfile profile = ParserProfile.textOnly();
+            profile.excludeParser(HTML_PARSER);
+            TikaRuntime.setProfile(profile);
+
+            Set<String> names = parserNames(TikaRuntime.initialize().getParser(), new HashSet<>());
+            assertFalse(names.contains(ParserProfile.OCR_PARSER));
+            assertFalse(names.contains(HTML_PARSER));
+            assertTrue(names.contains("org.apache.tika.parser.pdf.PDFParser"));
+            // HTML gets the parser options but no parser for embedded resources.
+            ParseContext html = TikaRuntime.getInstance().createDocumentContext();
+            assertNotNull(html.get(PDFParserConfig.class));
+            assertNull(html.get(Parser.class));
+            assertNotNull(TikaRuntime.getInstance().createContext().get(Parser.class));
+            // The picture in the document is neither parsed nor extracted.
+            assertEquals(0, embeddedObjects());
+        } finally {
+            TikaRuntime.setProfile(new ParserProfile());
+        }
+
+        Set<String> names = parserNames(TikaRuntime.initialize().getParser(), new HashSet<>());
+        assertTrue(names.contains(ParserProfile.OCR_PARSER));
+        assertTrue(names.contains(HTML_PARSER));
+        assertEquals(1, embeddedObjects());
+    }
+
+    @Test
+    public void testProfileChange() throws Exception {
+        File html = new File(getClass().getResource("/test.html").toURI());
+        DefaultConverter conv = new DefaultConverter();
+        String text = conv.convert(html).getText();
+        assertFalse(text.contains("<"));
+        try {
+            ParserProfile profile = new ParserProfile();
+            profile.excludeParser(HTML_PARSER);
+            XText.setParserProfile(profile);
+
+            // A converter created before the change parses with the new profile.
+            ConvertedDocument doc = conv.convert(html);
+            assertFalse(text.equals(doc.getText()));
+        } finally {
+            XText.setParserProfile(new ParserProfile());
+        }
+        assertEquals(text, conv.convert(html).getText());
+    }
+}
@@ -0,0 +1,47 @@
+package org.opensextant.xtext.converters.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.converters.SpreadsheetConverter;
+
+public class SpreadsheetConverterTest {
+
+    private static File createWorkbook() throws Exception {
+        File f = File.createTempFile("xtext", ".xlsx");
+        f.deleteOnExit();
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = new FileOutputStream(f)) {
+            XSSFSheet sheet = wb.createSheet("Accounts");
+            for (int i = 0; i < 10; ++i) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Person " + i);
+                row.createCell(2).setCellValue(i * 2);
+            }
+            wb.write(out);
+        }
+        return f;
+    }
+
+    @Test
+    public void testRows() throws Exception {
+        File f = createWorkbook();
+        ConvertedDocument doc = new SpreadsheetConverter().convert(f);
+        assertTrue(doc.getText().startsWith("Accounts\n\tPerson 0\t\t0\n\tPerson 1\t\t2\n"));
+        assertEquals(11, doc.getText().split("\n").length);
+
+        SpreadsheetConverter conv = new SpreadsheetConverter();
+        conv.setMaxRows(3);
+        doc = conv.convert(f);
+        assertEquals(4, doc.getText().split("\n").length);
+        assertTrue(doc.getJSONProperties().getBoolean("truncated"));
+    }
+}
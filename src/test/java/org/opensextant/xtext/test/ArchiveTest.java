@@ -0,0 +1,404 @@
+package org.opensextant.xtext.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opensextant.xtext.XText;
+
+public class ArchiveTest {
+
+    static File createZip(File dir, String name, String... entries) throws IOException {
+        File zip = new File(dir, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    static File createZip(File dir, String name, File... members) throws IOException {
+        File zip = new File(dir, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (File m : members) {
+                out.putNextEntry(new ZipEntry(m.getName()));
+                Files.copy(m.toPath(), out);
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    static XText createXText(List<String> converted) throws IOException {
+        XText xt = new XText();
+        xt.getPathManager().enableSaveWithInput(true);
+        xt.getPathManager().enableSaveChildrenWithInput(true);
+        xt.enableSaving(true);
+        xt.enableOverwrite(true);
+        xt.setConversionListener((doc, path) -> converted.add(new File(path).getName()));
+        return xt;
+    }
+
+    @Test
+    public void testInStream() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            String mht = "From: <Saved by a browser>\r\nSubject: Web page\r\nMIME-Version: 1.0\r\n"
+                    + "Content-Type: multipart/related; boundary=\"B1\"; type=\"text/html\"\r\n\r\n"
+                    + "--B1\r\nContent-Type: text/html; charset=\"utf-8\"\r\n"
+                    + "Content-Location: http://example.org/\r\n\r\n"
+                    + "<html><body><p>web archive entry</p></body></html>\r\n--B1--\r\n";
+            String eml = "From: a@example.org\r\nTo: b@example.org\r\nSubject: Note\r\n"
+                    + "Message-ID: <n1@example.org>\r\nMIME-Version: 1.0\r\n"
+                    + "Content-Type: text/plain\r\n\r\nmail entry\r\n";
+            File zip = createZip(dir, "test.zip", "a.txt", "plain text entry",
+                    "sub/b.html", "<html><body><p>html entry</p></body></html>",
+                    "w.mht", mht, "m.eml", eml);
+            List<String> converted = new ArrayList<>();
+            XText xt = createXText(converted);
+            xt.enableArchiveExport(false);
+            xt.setup();
+            xt.extractText(zip.getAbsolutePath());
+
+            assertEquals(4, converted.size());
+            File expanded = new File(dir, "test_zip");
+            assertFalse(new File(expanded, "sub/b.html").exists());
+            assertTrue(new File(expanded, "sub/xtext/b.html.txt").exists());
+            // Web archives are parsed from the stream; mail is written out, as its converter reads files.
+            assertFalse(new File(expanded, "w.mht").exists());
+            File mhtText = new File(expanded, "xtext/w.mht.txt");
+            assertTrue(FileUtils.readFileToString(mhtText, StandardCharsets.UTF_8).contains("web archive entry"));
+            assertTrue(new File(expanded, "m.eml").exists());
+            File emlText = new File(expanded, "xtext/m.eml.txt");
+            assertTrue(FileUtils.readFileToString(emlText, StandardCharsets.UTF_8).contains("mail entry"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            String[] entries = new String[40];
+            for (int i = 0; i < entries.length; i += 2) {
+                entries[i] = String.format("doc%d.html", i);
+                entries[i + 1] = String.format("<html><body><p>entry %d</p></body></html>", i);
+            }
+            File zip = createZip(dir, "test.zip", entries);
+            List<String> converted = Collections.synchronizedList(new ArrayList<>());
+            XText xt = createXText(converted);
+            xt.setArchiveThreads(3);
+            xt.setup();
+            xt.extractText(zip.getAbsolutePath());
+
+            assertEquals(20, converted.size());
+            assertEquals(20, new File(dir, "test_zip/xtext").list().length);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrentArchives() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            File output = new File(dir, "converted");
+            File export = new File(dir, "export");
+            output.mkdir();
+            export.mkdir();
+            List<String> names = Arrays.asList("a", "b");
+            List<File> outer = new ArrayList<>();
+            for (String n : names) {
+                File inner = createZip(dir, "inner_" + n + ".zip",
+                        n + "1.html", "<html><body><p>first</p></body></html>",
+                        n + "2.html", "<html><body><p>second</p></body></html>");
+                outer.add(createZip(dir, "outer_" + n + ".zip", inner));
+            }
+
+            XText xt = new XText();
+            xt.enableSaving(true);
+            xt.enableOverwrite(true);
+            xt.getPathManager().setConversionCache(output.getAbsolutePath());
+            xt.getPathManager().setExtractedChildrenCache(export.getAbsolutePath());
+            xt.getPathManager().setInputRoot(dir);
+            xt.convertFileType("zip");
+            // Both nested archives are being expanded once their first entries are converted.
+            CyclicBarrier firstEntries = new CyclicBarrier(2);
+            xt.setConversionListener((doc, path) -> {
+                if (path.endsWith("1.html")) {
+                    try {
+                        firstEntries.await(10, TimeUnit.SECONDS);
+                    } catch (Exception err) {
+                        // Timed out, so the archives were not converted at the same time.
+                    }
+                }
+            });
+            xt.setup();
+
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (File zip : outer) {
+                tasks.add(pool.submit(() -> xt.convertFile(zip)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            pool.shutdown();
+
+            for (String n : names) {
+                File saved = new File(output, "inner_" + n + "_zip");
+                assertTrue(new File(saved, n + "1.html.txt").exists());
+                assertTrue(new File(saved, n + "2.html.txt").exists());
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            byte[] html = "<html><body><p>gzip entry</p></body></html>".getBytes(StandardCharsets.UTF_8);
+            File gz = new File(dir, "page.html.gz");
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+                out.write(html);
+            }
+            File tgz = new File(dir, "pages.tgz");
+            try (TarArchiveOutputStream out = new TarArchiveOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(tgz)))) {
+                TarArchiveEntry entry = new TarArchiveEntry("sub/b.html");
+                entry.setSize(html.length);
+                out.putArchiveEntry(entry);
+                out.write(html);
+                out.closeArchiveEntry();
+            }
+            List<String> converted = new ArrayList<>();
+            XText xt = createXText(converted);
+            xt.setup();
+            xt.extractText(gz.getAbsolutePath());
+            xt.extractText(tgz.getAbsolutePath());
+
+            assertEquals(2, converted.size());
+            assertTrue(new File(dir, "page.html_gz/xtext/page.html.txt").exists());
+            assertTrue(new File(dir, "pages_tgz/pages/sub/xtext/b.html.txt").exists());
+            assertFalse(new File(dir, "pages_tgz/pages.tar").exists());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            // A gzip member does not declare its size; the limit applies to what is read.
+            char[] fill = new char[5000];
+            Arrays.fill(fill, 'a');
+            byte[] large = ("<html><body><p>" + new String(fill) + "</p></body></html>").getBytes(StandardCharsets.UTF_8);
+            byte[] small = "<html><body><p>small</p></body></html>".getBytes(StandardCharsets.UTF_8);
+            File largeGz = new File(dir, "large.html.gz");
+            File smallGz = new File(dir, "small.html.gz");
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(largeGz))) {
+                out.write(large);
+            }
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(smallGz))) {
+                out.write(small);
+            }
+            List<String> converted = new ArrayList<>();
+            XText xt = createXText(converted);
+            xt.enableArchiveExport(false);
+            xt.setMaxFileSize(1000);
+            xt.setup();
+            xt.extractText(largeGz.getAbsolutePath());
+            xt.extractText(smallGz.getAbsolutePath());
+
+            assertEquals(Arrays.asList("small.html"), converted);
+            assertFalse(new File(dir, "large.html_gz/xtext/large.html.txt").exists());
+            assertFalse(new File(dir, "large.html_gz/large.html").exists());
+            assertTrue(new File(dir, "small.html_gz/xtext/small.html.txt").exists());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            List<String> converted = new ArrayList<>();
+            List<String> limited = new ArrayList<>();
+            XText xt = createXText(converted);
+            xt.convertFileType("zip");
+            List<Long> bytesRead = new ArrayList<>();
+            xt.setConversionListener((doc, path) -> {
+                String limit = doc.getProperty("archive_limit");
+                (limit != null ? limited : converted).add(new File(path).getName() + (limit != null ? ":" + limit : ""));
+                if (limit != null) {
+                    bytesRead.add(doc.getNumberProperty("archive_bytes"));
+                }
+            });
+            xt.getArchiveLimits().setMaxDepth(2);
+            xt.setup();
+
+            // 4 MB of one character compresses some 1000:1
+            char[] fill = new char[0x400000];
+            Arrays.fill(fill, 'a');
+            File bomb = createZip(dir, "bomb.zip", "a.txt", new String(fill));
+            xt.extractText(bomb.getAbsolutePath());
+            assertEquals(Arrays.asList("bomb.zip:ratio"), limited);
+            assertEquals(0, converted.size());
+            // Declared ratio in the central directory; nothing was read.
+            assertEquals(Arrays.asList(0L), bytesRead);
+
+            // Reported once, by the nested archive that hit the limit.
+            limited.clear();
+            File wrapped = createZip(dir, "wrapped.zip", bomb);
+            xt.extractText(wrapped.getAbsolutePath());
+            assertEquals(Arrays.asList("bomb.zip:ratio"), limited);
+            assertEquals(0, converted.size());
+
+            limited.clear();
+            File inner = createZip(dir, "inner.zip", "b.html", "<html><body><p>too deep</p></body></html>");
+            File middle = createZip(dir, "middle.zip", inner);
+            File outer = createZip(dir, "outer.zip", middle);
+            xt.extractText(outer.getAbsolutePath());
+            assertEquals(Arrays.asList("inner.zip:depth"), limited);
+            assertEquals(0, converted.size());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrentLimits() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            List<String> converted = Collections.synchronizedList(new ArrayList<>());
+            List<String> limited = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch bombDone = new CountDownLatch(1);
+            XText xt = createXText(converted);
+            xt.convertFileType("zip");
+            xt.setConversionListener((doc, path) -> {
+                String name = new File(path).getName();
+                String limit = doc.getProperty("archive_limit");
+                if (limit != null) {
+                    limited.add(name + ":" + limit);
+                    bombDone.countDown();
+                    return;
+                }
+                converted.add(name);
+                if (name.equals("b1.html")) {
+                    // Expansion of this archive is under way while the other is converted.
+                    started.countDown();
+                    try {
+                        bombDone.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException err) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            xt.getArchiveLimits().setMaxDepth(1);
+            xt.setup();
+
+            char[] fill = new char[0x400000];
+            Arrays.fill(fill, 'a');
+            File bomb = createZip(dir, "bomb.zip", "a.txt", new String(fill));
+            File good = createZip(dir, "good.zip", "b1.html", "<html><body><p>first</p></body></html>",
+                    "b2.html", "<html><body><p>second</p></body></html>");
+
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            Future<?> goodTask = pool.submit(() -> xt.convertFile(good));
+            Future<?> bombTask = pool.submit(() -> {
+                started.await(10, TimeUnit.SECONDS);
+                return xt.convertFile(bomb);
+            });
+            goodTask.get();
+            bombTask.get();
+            pool.shutdown();
+
+            // Neither archive counts toward the depth of the other, and the bomb stops only itself.
+            assertEquals(Arrays.asList("bomb.zip:ratio"), limited);
+            Collections.sort(converted);
+            assertEquals(Arrays.asList("b1.html", "b2.html"), converted);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testManifest() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            List<String> converted = new ArrayList<>();
+            XText xt = createXText(converted);
+            xt.enableOverwrite(false);
+            xt.enableArchiveManifest(true);
+            xt.setup();
+
+            File zip = createZip(dir, "drop.zip", "a.html", "<html><body><p>a</p></body></html>",
+                    "b.html", "<html><body><p>b</p></body></html>");
+            xt.extractText(zip.getAbsolutePath());
+            assertEquals(2, converted.size());
+
+            converted.clear();
+            zip = createZip(dir, "drop.zip", "a.html", "<html><body><p>a</p></body></html>",
+                    "b.html", "<html><body><p>b, revised</p></body></html>",
+                    "c.html", "<html><body><p>c</p></body></html>");
+            xt.extractText(zip.getAbsolutePath());
+            Collections.sort(converted);
+            assertEquals(Arrays.asList("b.html", "c.html"), converted);
+
+            // Stopped at a limit: entries not reached stay in the manifest.
+            File manifest = new File(dir, "drop_zip/.xtext-manifest");
+            xt.getArchiveLimits().setMaxEntries(1);
+            xt.extractText(zip.getAbsolutePath());
+            assertEquals(3, Files.readAllLines(manifest.toPath()).size());
+
+            // Entries removed from the archive are dropped from the manifest, and converted again if restored.
+            xt.getArchiveLimits().setMaxEntries(1000);
+            zip = createZip(dir, "drop.zip", "b.html", "<html><body><p>b, revised</p></body></html>");
+            xt.extractText(zip.getAbsolutePath());
+            List<String> lines = Files.readAllLines(manifest.toPath());
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).endsWith("\tb.html"));
+
+            converted.clear();
+            zip = createZip(dir, "drop.zip", "a.html", "<html><body><p>a</p></body></html>",
+                    "b.html", "<html><body><p>b, revised</p></body></html>");
+            xt.extractText(zip.getAbsolutePath());
+            assertEquals(Arrays.asList("a.html"), converted);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
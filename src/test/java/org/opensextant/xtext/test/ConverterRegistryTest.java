@@ -0,0 +1,100 @@
+package org.opensextant.xtext.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.opensextant.xtext.Converter;
+import org.opensextant.xtext.ConverterProvider;
+import org.opensextant.xtext.ConverterRegistry;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.ConverterSettings;
+import org.opensextant.xtext.XText;
+import org.opensextant.xtext.converters.StandardProviders;
+import org.opensextant.xtext.converters.TikaHTMLConverter;
+
+public class ConverterRegistryTest {
+
+    static class CustomHTML implements ConverterProvider {
+        int created = 0;
+
+        @Override
+        public Collection<String> getFileTypes() {
+            return Collections.singletonList("html");
+        }
+
+        @Override
+        public Collection<String> getContentTypes() {
+            return Collections.singletonList("text/html");
+        }
+
+        @Override
+        public int getPriority() {
+            return 10;
+        }
+
+        @Override
+        public Converter create(ConverterSettings settings) {
+            ++created;
+            return new TikaHTMLConverter(true);
+        }
+    }
+
+    @Test
+    public void testRegistry() throws Exception {
+        Set<String> types = new HashSet<>(Arrays.asList("html", "htm", "eml"));
+        ConverterRegistry registry = new ConverterRegistry(new ConverterSettings());
+        registry.load(types);
+        assertTrue(registry.forExtension("htm") instanceof StandardProviders.HTML);
+        assertTrue(registry.forContentType("message/rfc822") instanceof StandardProviders.Mail);
+        // Not requested
+        assertNull(registry.forExtension("mht"));
+        assertNull(registry.forContentType("multipart/related"));
+
+        CustomHTML custom = new CustomHTML();
+        registry.register(custom, types);
+        assertSame(custom, registry.forExtension("html"));
+        assertSame(custom, registry.forContentType("text/html"));
+        assertEquals(0, custom.created);
+        Converter conv = registry.getConverter(custom);
+        assertSame(conv, registry.getConverter(custom));
+        assertEquals(1, custom.created);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testConvertersMap() throws Exception {
+        XText xt = new XText();
+        xt.setup();
+        assertSame(xt.getConverter("html"), XText.converters.get("html"));
+        assertTrue(XText.converters.containsKey("htm"));
+        assertNull(XText.converters.get("unknown"));
+    }
+
+    @Test
+    public void testDetectedTypeWithoutConverter() throws Exception {
+        // Detected as application/xml, which has no converter of its own; the .txt converter is kept.
+        File txt = File.createTempFile("xml-like", ".txt");
+        txt.deleteOnExit();
+        Files.write(txt.toPath(), "<?xml version=\"1.0\"?>\n<note><to>Tove</to></note>\n".getBytes(StandardCharsets.UTF_8));
+
+        XText xt = new XText();
+        xt.enableSaving(false);
+        xt.setup();
+        ConvertedDocument doc = xt.convert(txt);
+        // Text as-is; the XML parser would have dropped the markup.
+        assertTrue(doc.getText().startsWith("<?xml"));
+        assertTrue(doc.getText().contains("<to>Tove</to>"));
+    }
+}
@@ -0,0 +1,180 @@
+package org.opensextant.xtext.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.XText;
+import org.opensextant.xtext.collectors.CollectionListener;
+import org.opensextant.xtext.collectors.mailbox.MboxCrawler;
+
+public class MboxCrawlerTest {
+
+    private static final String FIRST = "From: alice@example.org\nSubject: First\n"
+            + "Date: Mon, 7 Apr 2014 10:00:00 +0000\n\n"
+            + "Dear Bob,\nFrom the desk of Alice: not a new message.\n"
+            + ">From here on, quoted.\n>>From twice quoted.\n\n";
+    private static final String SECOND = "From: bob@example.org\nSubject: Second\n"
+            + "Date: Tue, 8 Apr 2014 11:00:00 +0000\n\nReply text.\n\n";
+    private static final String THIRD = "From: carol@example.org\n\nLast one.\n";
+
+    private static String envelope(int i) {
+        return String.format("From sender%d@example.org Mon Apr  7 10:00:00 2014\n", i);
+    }
+
+    /**
+     * Split mbox; return saved messages in order.
+     */
+    private static List<File> split(File mbox, File output) throws Exception {
+        List<File> saved = new ArrayList<>();
+        MboxCrawler crawler = new MboxCrawler(mbox);
+        crawler.setOutputMboxDir(output);
+        crawler.setListener(new CollectionListener() {
+            @Override
+            public void collected(ConvertedDocument doc, String filepath) {
+            }
+
+            @Override
+            public void collected(File doc) {
+                saved.add(doc);
+            }
+
+            @Override
+            public boolean exists(String oid) {
+                return false;
+            }
+        });
+        crawler.configure();
+        crawler.collect();
+        assertEquals(saved.size(), crawler.getMessageCount());
+        return saved;
+    }
+
+    private static String read(File f) throws Exception {
+        return FileUtils.readFileToString(f, StandardCharsets.UTF_8);
+    }
+
+    private static void testSplit(String eol) throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            String data = "Text ahead of the first message is ignored.\n\n" + envelope(1) + FIRST + envelope(2)
+                    + SECOND + envelope(3) + THIRD;
+            File mbox = new File(dir, "test.mbox");
+            FileUtils.writeStringToFile(mbox, data.replace("\n", eol), StandardCharsets.UTF_8);
+
+            List<File> saved = split(mbox, new File(dir, "test_mbox"));
+            assertEquals(3, saved.size());
+            assertEquals("2014-04-07", saved.get(0).getParentFile().getName());
+            assertEquals("undated", saved.get(2).getParentFile().getName());
+
+            // "From " inside a paragraph does not start a message; mboxrd quoting loses one ">".
+            String expected = FIRST.replace(">From here", "From here").replace(">>From", ">From");
+            assertEquals(expected.replace("\n", eol), read(saved.get(0)));
+            assertEquals(SECOND.replace("\n", eol), read(saved.get(1)));
+            assertEquals(THIRD.replace("\n", eol), read(saved.get(2)));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        testSplit("\n");
+    }
+
+    @Test
+    public void testSplitCRLF() throws Exception {
+        testSplit("\r\n");
+    }
+
+    @Test
+    public void testLargeHeader() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            // Headers past the 256 KB parsing limit are still saved in full.
+            StringBuilder big = new StringBuilder("From: dave@example.org\nSubject: Big header\n");
+            while (big.length() < 0x50000) {
+                big.append("X-Filler: ").append(String.join("", Collections.nCopies(80, "x"))).append("\n");
+            }
+            big.append("\nBody after a big header.\n\n");
+            File mbox = new File(dir, "test.mbox");
+            FileUtils.writeStringToFile(mbox, envelope(1) + big + envelope(2) + SECOND, StandardCharsets.UTF_8);
+
+            List<File> saved = split(mbox, new File(dir, "test_mbox"));
+            assertEquals(2, saved.size());
+            assertEquals(big.toString(), read(saved.get(0)));
+            assertEquals(SECOND, read(saved.get(1)));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * A message with a zip attachment that holds one text file.
+     */
+    private static String messageWithZip(int i) throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry(String.format("note%d.txt", i)));
+            out.write(String.format("Text of note %d, zipped and attached.", i).getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        String attachment = Base64.getMimeEncoder(76, "\n".getBytes()).encodeToString(zip.toByteArray());
+        return String.format("From: sender%d@example.org\nSubject: Notes %d\nMessage-ID: <m%d@example.org>\n"
+                + "MIME-Version: 1.0\nContent-Type: multipart/mixed; boundary=\"B\"\n\n"
+                + "--B\nContent-Type: text/plain\n\nSee attached notes.\n"
+                + "--B\nContent-Type: application/zip; name=\"notes%d.zip\"\n"
+                + "Content-Disposition: attachment; filename=\"notes%d.zip\"\n"
+                + "Content-Transfer-Encoding: base64\n\n%s\n--B--\n\n", i, i, i, i, i, attachment);
+    }
+
+    private static List<String> convert(File mbox, int threads) throws Exception {
+        List<String> converted = Collections.synchronizedList(new ArrayList<>());
+        XText xt = ArchiveTest.createXText(converted);
+        xt.setMboxThreads(threads);
+        // Archives are converted only on request.
+        xt.convertFileType("zip");
+        xt.setup();
+        xt.extractText(mbox.getAbsolutePath());
+        Collections.sort(converted);
+        return converted;
+    }
+
+    @Test
+    public void testConvertThreads() throws Exception {
+        File dir = Files.createTempDirectory("xtext").toFile();
+        try {
+            StringBuilder data = new StringBuilder();
+            for (int i = 1; i <= 6; ++i) {
+                data.append(envelope(i)).append(messageWithZip(i));
+            }
+            File mbox = new File(dir, "test.mbox");
+            FileUtils.writeStringToFile(mbox, data.toString(), StandardCharsets.UTF_8);
+
+            List<String> serial = convert(mbox, 1);
+            for (int i = 1; i <= 6; ++i) {
+                assertTrue(serial.contains(String.format("note%d.txt", i)));
+            }
+            // Attachment, and the archive in it, are expanded next to the message.
+            File note = new File(dir, "test_mbox/undated/000003_Notes_3_eml/notes3_zip/note3.txt");
+            assertTrue(read(note).contains("Text of note 3"));
+
+            assertEquals(serial, convert(mbox, 3));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
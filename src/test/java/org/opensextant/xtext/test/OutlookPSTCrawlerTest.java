@@ -0,0 +1,69 @@
+package org.opensextant.xtext.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opensextant.xtext.collectors.mailbox.OutlookPSTCrawler;
+
+public class OutlookPSTCrawlerTest {
+
+    /* Two messages share subject and message ID; only the PST node ID tells their folders apart. */
+    private static final String[][] MESSAGES = {
+            { "Quarterly report", "<same@example.org>", "report.txt", "First report, from the first message." },
+            { "Quarterly report", "<same@example.org>", "report.txt", "Second report -- the other one." },
+            { "Lunch", "<lunch@example.org>", "menu.txt", "Soup and bread." } };
+
+    /**
+     * @return attachment text by path relative to the output
+     */
+    private static Map<String, String> crawl(File pst, File output, int threads) throws Exception {
+        OutlookPSTCrawler crawler = new OutlookPSTCrawler(pst);
+        crawler.threads = threads;
+        // One message per task, so messages are read concurrently.
+        crawler.setItemBatchSize(1);
+        crawler.setOutputDir(output);
+        crawler.configure();
+        crawler.collect();
+
+        Map<String, String> attachments = new TreeMap<>();
+        for (File f : FileUtils.listFiles(output, new String[] { "txt" }, true)) {
+            if (f.getName().equals("report.txt") || f.getName().equals("menu.txt")) {
+                String path = output.toPath().relativize(f.toPath()).toString();
+                attachments.put(path, FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+            }
+        }
+        return attachments;
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        File tempDir = Files.createTempDirectory("xtext").toFile();
+        try {
+            File pst = new File(tempDir, "sample.pst");
+            SamplePST.write(pst, "Inbox", MESSAGES);
+
+            File serial = new File(tempDir, "serial");
+            serial.mkdir();
+            Map<String, String> found = crawl(pst, serial, 1);
+            assertEquals(3, found.size());
+            for (String[] msg : MESSAGES) {
+                assertTrue(msg[3], found.containsValue(msg[3]));
+            }
+
+            // Concurrent: the same folders, each attachment intact.
+            File concurrent = new File(tempDir, "concurrent");
+            concurrent.mkdir();
+            assertEquals(found, crawl(pst, concurrent, 2));
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+}
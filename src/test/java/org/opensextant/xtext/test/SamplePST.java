@@ -0,0 +1,277 @@
+package org.opensextant.xtext.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a small ANSI PST with one mail folder of messages.  Each message has a text attachment.  Only the
+ * structures java-libpst reads are written.  There are no allocation maps or CRCs, and the name-to-ID map is
+ * empty.  Layout follows [MS-PST]: node and block B-trees of one leaf page each, heap-on-node property
+ * contexts and table contexts, and a subnode block per message for its attachment table and attachment.
+ */
+class SamplePST {
+
+    private static final int NID_NAME_TO_ID_MAP = 0x61;
+    private static final int NID_ROOT_FOLDER = 0x122;
+    private static final int NID_MAIL_FOLDER = 0x8022;
+    private static final int NID_ATTACHMENT_TABLE = 0x671;
+    private static final int NID_ATTACHMENT = 0x8025;
+    private static final int HIERARCHY_TABLE = 11;
+    private static final int CONTENTS_TABLE = 12;
+
+    private static final int PT_LONG = 0x0003;
+    private static final int PT_BOOLEAN = 0x000B;
+    private static final int PT_UNICODE = 0x001F;
+    private static final int PT_SYSTIME = 0x0040;
+    private static final int PT_BINARY = 0x0102;
+
+    /* 2014-04-05 12:00 UTC, as a FILETIME */
+    private static final long CREATED = (1396699200L + 11644473600L) * 10000000L;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final List<int[]> blocks = new ArrayList<>();
+    private final List<int[]> nodes = new ArrayList<>();
+    private int nextBid = 4;
+
+    /**
+     * @param pst      file to write
+     * @param folder   name of the mail folder
+     * @param messages subject, message ID, attachment name and attachment text of each message
+     * @throws IOException on err
+     */
+    static void write(File pst, String folder, String[]... messages) throws IOException {
+        new SamplePST().build(pst, folder, messages);
+    }
+
+    private void build(File pst, String folder, String[][] messages) throws IOException {
+        Map<Integer, Object> names = new TreeMap<>();
+        names.put(tag(0x0002, PT_BINARY), new byte[16]);
+        names.put(tag(0x0003, PT_BINARY), new byte[8]);
+        names.put(tag(0x0004, PT_BINARY), new byte[4]);
+        node(NID_NAME_TO_ID_MAP, 0, propertyContext(names), 0);
+
+        Map<Integer, Object> root = folderProperties("Top of Personal Folders", 0, true);
+        node(NID_ROOT_FOLDER, NID_ROOT_FOLDER, propertyContext(root), 0);
+        node(NID_ROOT_FOLDER + HIERARCHY_TABLE, NID_ROOT_FOLDER, tableContext(NID_MAIL_FOLDER), 0);
+        node(NID_ROOT_FOLDER + CONTENTS_TABLE, NID_ROOT_FOLDER, tableContext(), 0);
+
+        int[] items = new int[messages.length];
+        for (int m = 0; m < messages.length; ++m) {
+            items[m] = ((0x10000 + m) << 5) | 4;
+        }
+        Map<Integer, Object> mail = folderProperties(folder, messages.length, false);
+        node(NID_MAIL_FOLDER, NID_ROOT_FOLDER, propertyContext(mail), 0);
+        node(NID_MAIL_FOLDER + HIERARCHY_TABLE, NID_MAIL_FOLDER, tableContext(), 0);
+        node(NID_MAIL_FOLDER + CONTENTS_TABLE, NID_MAIL_FOLDER, tableContext(items), 0);
+
+        for (int m = 0; m < messages.length; ++m) {
+            String[] msg = messages[m];
+            Map<Integer, Object> props = new TreeMap<>();
+            props.put(tag(0x001A, PT_UNICODE), text("IPM.Note"));
+            props.put(tag(0x0037, PT_UNICODE), text(msg[0]));
+            props.put(tag(0x0C1A, PT_UNICODE), text("Sample Sender"));
+            props.put(tag(0x0C1F, PT_UNICODE), text("sender@example.org"));
+            props.put(tag(0x0E1B, PT_BOOLEAN), 1);
+            props.put(tag(0x1000, PT_UNICODE), text("Message " + (m + 1)));
+            props.put(tag(0x1035, PT_UNICODE), text(msg[1]));
+            props.put(tag(0x3007, PT_SYSTIME), filetime(CREATED));
+
+            Map<Integer, Object> att = new TreeMap<>();
+            att.put(tag(0x0E20, PT_LONG), msg[3].length());
+            att.put(tag(0x3701, PT_BINARY), msg[3].getBytes(StandardCharsets.UTF_8));
+            att.put(tag(0x3704, PT_UNICODE), text(msg[2]));
+            att.put(tag(0x3705, PT_LONG), 1);
+            att.put(tag(0x3707, PT_UNICODE), text(msg[2]));
+
+            int table = block(tableContext(NID_ATTACHMENT), false);
+            int attachment = block(propertyContext(att), false);
+            ByteBuffer sub = buffer(4 + 2 * 12);
+            sub.put((byte) 0x02).put((byte) 0).putShort((short) 2);
+            sub.putInt(NID_ATTACHMENT_TABLE).putInt(table).putInt(0);
+            sub.putInt(NID_ATTACHMENT).putInt(attachment).putInt(0);
+            node(items[m], NID_MAIL_FOLDER, propertyContext(props), block(sub.array(), true));
+        }
+        writeFile(pst);
+    }
+
+    private static Map<Integer, Object> folderProperties(String name, int count, boolean subfolders) {
+        Map<Integer, Object> props = new TreeMap<>();
+        props.put(tag(0x3001, PT_UNICODE), text(name));
+        props.put(tag(0x3602, PT_LONG), count);
+        props.put(tag(0x3603, PT_LONG), 0);
+        props.put(tag(0x360A, PT_BOOLEAN), subfolders ? 1 : 0);
+        return props;
+    }
+
+    private static int tag(int id, int type) {
+        return (id << 16) | type;
+    }
+
+    private static byte[] text(String s) {
+        return s.getBytes(StandardCharsets.UTF_16LE);
+    }
+
+    private static byte[] filetime(long t) {
+        return buffer(8).putLong(t).array();
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Property context: a BTH of 2-byte property IDs to 6-byte type and value records.  Values of 4 bytes or
+     * less are in the record, others on the heap.
+     */
+    private static byte[] propertyContext(Map<Integer, Object> props) {
+        List<byte[]> allocs = new ArrayList<>();
+        allocs.add(bthHeader(2, 6, 0x40));
+        ByteBuffer records = buffer(props.size() * 8);
+        allocs.add(records.array());
+        for (Map.Entry<Integer, Object> p : props.entrySet()) {
+            records.putShort((short) (p.getKey() >>> 16)).putShort((short) (int) p.getKey());
+            if (p.getValue() instanceof Integer) {
+                records.putInt((Integer) p.getValue());
+            } else {
+                allocs.add((byte[]) p.getValue());
+                records.putInt(allocs.size() << 5);
+            }
+        }
+        return heap(0xBC, 0x20, allocs);
+    }
+
+    /**
+     * Table context with one column, the row ID (PidTagLtpRowId), which is all java-libpst needs to find the
+     * items of a folder or message.
+     */
+    private static byte[] tableContext(int... rows) {
+        List<byte[]> allocs = new ArrayList<>();
+        int hidIndex = rows.length > 0 ? 0x40 : 0;
+        allocs.add(bthHeader(4, 2, hidIndex));
+        if (rows.length > 0) {
+            ByteBuffer index = buffer(rows.length * 6);
+            for (int r = 0; r < rows.length; ++r) {
+                index.putInt(rows[r]).putShort((short) r);
+            }
+            allocs.add(index.array());
+        }
+        ByteBuffer info = buffer(22 + 8);
+        info.put((byte) 0x7C).put((byte) 1);
+        info.putShort((short) 4).putShort((short) 4).putShort((short) 4).putShort((short) 5);
+        info.putInt(0x20).putInt(rows.length > 0 ? (allocs.size() + 2) << 5 : 0).putInt(0);
+        info.putInt(tag(0x67F2, PT_LONG)).putShort((short) 0).put((byte) 4).put((byte) 0);
+        allocs.add(info.array());
+        int hidInfo = allocs.size() << 5;
+        if (rows.length > 0) {
+            ByteBuffer data = buffer(rows.length * 5);
+            for (int row : rows) {
+                data.putInt(row).put((byte) 0x01);
+            }
+            allocs.add(data.array());
+        }
+        return heap(0x7C, hidInfo, allocs);
+    }
+
+    private static byte[] bthHeader(int key, int value, int hidRoot) {
+        return buffer(8).put((byte) 0xB5).put((byte) key).put((byte) value).put((byte) 0).putInt(hidRoot).array();
+    }
+
+    /**
+     * Heap-on-node of one block: header, allocations, then the page map of allocation offsets.
+     */
+    private static byte[] heap(int clientSig, int hidUserRoot, List<byte[]> allocs) {
+        int size = 12;
+        for (byte[] a : allocs) {
+            size += a.length;
+        }
+        int pageMap = size + (size & 1);
+        ByteBuffer hn = buffer(pageMap + 4 + 2 * (allocs.size() + 1));
+        hn.putShort((short) pageMap).put((byte) 0xEC).put((byte) clientSig).putInt(hidUserRoot).putInt(0);
+        List<Integer> offsets = new ArrayList<>();
+        for (byte[] a : allocs) {
+            offsets.add(hn.position());
+            hn.put(a);
+        }
+        offsets.add(hn.position());
+        hn.position(pageMap);
+        hn.putShort((short) allocs.size()).putShort((short) 0);
+        for (int off : offsets) {
+            hn.putShort((short) off);
+        }
+        return hn.array();
+    }
+
+    private void node(int nid, int parent, byte[] data, int bidSub) {
+        nodes.add(new int[] { nid, block(data, false), bidSub, parent });
+    }
+
+    /**
+     * Blocks are 64-byte aligned after the 512-byte header.  Internal blocks (subnode lists) have bit 2 of the
+     * block ID set.
+     */
+    private int block(byte[] data, boolean internal) {
+        int bid = nextBid | (internal ? 2 : 0);
+        nextBid += 4;
+        while (body.size() % 64 != 0) {
+            body.write(0);
+        }
+        blocks.add(new int[] { bid, 512 + body.size(), data.length });
+        body.write(data, 0, data.length);
+        return bid;
+    }
+
+    private void writeFile(File pst) throws IOException {
+        while (body.size() % 512 != 0) {
+            body.write(0);
+        }
+        int nbt = 512 + body.size();
+        ByteBuffer page = buffer(512);
+        for (int[] n : nodes) {
+            page.putInt(n[0]).putInt(n[1]).putInt(n[2]).putInt(n[3]);
+        }
+        body.write(btreePage(page, nodes.size(), 16, 0x81, nextBid), 0, 512);
+        int bbt = 512 + body.size();
+        page = buffer(512);
+        for (int[] b : blocks) {
+            page.putInt(b[0]).putInt(b[1]).putShort((short) b[2]).putShort((short) 2);
+        }
+        body.write(btreePage(page, blocks.size(), 12, 0x80, nextBid + 4), 0, 512);
+
+        ByteBuffer header = buffer(512);
+        header.put("!BDN".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(0).putShort((short) 0x4D53).putShort((short) 14).putShort((short) 19);
+        header.put((byte) 1).put((byte) 1);
+        header.putInt(24, nextBid + 8).putInt(28, nextBid + 8);
+        header.putInt(168, 512 + body.size());
+        header.putInt(184, nextBid).putInt(188, nbt);
+        header.putInt(192, nextBid + 4).putInt(196, bbt);
+        header.put(460, (byte) 0x80).put(461, (byte) 0);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(header.array(), 0, 512);
+        body.writeTo(file);
+        Files.write(pst.toPath(), file.toByteArray());
+    }
+
+    /**
+     * Leaf page of a B-tree: entries, then counts and level 0, then the page trailer.
+     */
+    private static byte[] btreePage(ByteBuffer page, int count, int size, int type, int bid) {
+        if (count * size > 496) {
+            throw new IllegalArgumentException("Too many entries for one B-tree page");
+        }
+        page.position(496);
+        page.put((byte) count).put((byte) (496 / size)).put((byte) size).put((byte) 0);
+        page.put((byte) type).put((byte) type).putShort((short) 0).putInt(bid).putInt(0);
+        return page.array();
+    }
+}
@@ -11,6 +11,9 @@ public class TestPST {
             OutlookPSTCrawler pst = new OutlookPSTCrawler(args[0]);
             pst.incrementalMode = true;
             pst.overwriteMode = true;
+            if (args.length > 1) {
+                pst.threads = Integer.parseInt(args[1]);
+            }
             pst.setOutputDir(new File("/tmp"));
 
             pst.configure();
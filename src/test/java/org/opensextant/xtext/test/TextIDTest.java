@@ -0,0 +1,44 @@
+package org.opensextant.xtext.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opensextant.util.TextUtils;
+import org.opensextant.xtext.ConvertedDocument;
+import org.opensextant.xtext.PathManager;
+import org.opensextant.xtext.converters.TextTranscodingConverter;
+
+public class TextIDTest {
+
+    @ClassRule
+    public static final TemporaryFolder TEMP_DIR = new TemporaryFolder();
+
+    @Test
+    public void testTextIDComputedOnSave() throws Exception {
+        File orig = TEMP_DIR.newFile("sample.txt");
+        FileUtils.writeStringToFile(orig, "Café au lait,\r\nüber alles — 😀 done.", StandardCharsets.UTF_8);
+
+        // As the Sharepoint crawl does: convert, add metadata, then save with the default ID.
+        ConvertedDocument doc = new TextTranscodingConverter().convert(orig);
+        doc.addSourceURL("http://example.org/sample.txt", "http://example.org/");
+        File saved = TEMP_DIR.newFile("sample.txt.txt");
+        doc.saveBuffer(saved, true);
+
+        String expected = TextUtils.text_id(doc.getText());
+        assertEquals(expected, doc.id);
+        ConvertedDocument cached = PathManager.getCachedDocument(saved);
+        assertEquals(expected, cached.getProperty("xtext_id"));
+        assertEquals(doc.getText(), cached.getText());
+
+        // Buffer changed after save; ID must follow the new text.
+        doc.setText("Something else entirely");
+        doc.setDefaultID();
+        assertEquals(TextUtils.text_id("Something else entirely"), doc.id);
+    }
+}
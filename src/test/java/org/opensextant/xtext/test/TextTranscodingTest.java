@@ -1,9 +1,14 @@
 package org.opensextant.xtext.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 import org.opensextant.xtext.ConvertedDocument;
@@ -19,4 +24,26 @@ public class TextTranscodingTest {
         assertTrue(doc.getEncoding().equals("UTF-8"));
     }
 
+    @Test
+    public void testLatin1AfterASCIISample() throws IOException {
+        // ASCII well past the sample read for detection, then Latin-1.
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] line = "Plain ASCII line of text.\n".getBytes(StandardCharsets.US_ASCII);
+        while (data.size() < 0x20000) {
+            data.write(line);
+        }
+        String latin = "Le caf\u00e9 de la r\u00e9gion est tr\u00e8s appr\u00e9ci\u00e9 \u00e0 No\u00ebl.\n";
+        for (int i = 0; i < 20; ++i) {
+            data.write(latin.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        TextTranscodingConverter ttc = new TextTranscodingConverter();
+        ConvertedDocument doc = ttc.convert(new ByteArrayInputStream(data.toByteArray()));
+        assertFalse(doc.getText().contains("\ufffd"));
+        assertTrue(doc.getText().endsWith(latin.trim()));
+        // Converted text is trimmed of the final line break.
+        assertEquals(data.size() - 1, doc.getText().length());
+        assertFalse("ASCII".equals(doc.getEncoding()) || "UTF-8".equals(doc.getEncoding()));
+        assertTrue(doc.is_converted);
+    }
 }